@@ -0,0 +1,65 @@
+package ubc.cosc322.benchmarks;
+
+import java.util.SplittableRandom;
+
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.MoveGenerator;
+
+/**
+ * Fixed positions shared by the benchmarks, so numbers from different runs and engine versions are comparable.
+ */
+final class BenchmarkPositions {
+    static final String OPENING = "opening";
+    static final String MIDGAME = "midgame";
+    static final String ENDGAME = "endgame";
+
+    private BenchmarkPositions() {
+    }
+
+    /**
+     * Builds a position by playing a fixed number of moves chosen by a seeded generator from the opening.
+     *
+     * @param name OPENING (no moves), MIDGAME (20 moves) or ENDGAME (40 moves).
+     * @return The position; the player to move is always Board.P1.
+     */
+    static Board create(String name) {
+        int plies;
+        switch (name) {
+            case OPENING:
+                plies = 0;
+                break;
+            case MIDGAME:
+                plies = 20;
+                break;
+            case ENDGAME:
+                plies = 40;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown benchmark position: " + name);
+        }
+        Board board = new Board();
+        SplittableRandom random = new SplittableRandom(322L);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int playerNo = Board.P1;
+        for (int i = 0; i < plies; i++) {
+            int count = board.getAllPossibleMoves(playerNo, moves);
+            if (count == 0) {
+                break;
+            }
+            board.makeMove(moves[random.nextInt(count)]);
+            playerNo = 3 - playerNo;
+        }
+        return board;
+    }
+
+    /**
+     * @param board A position.
+     * @param playerNo The player whose queen to return.
+     * @return The square of the player's first queen.
+     */
+    static int firstQueen(Board board, int playerNo) {
+        int[] queens = new int[MoveGenerator.QUEENS_PER_PLAYER];
+        board.getQueenSquares(playerNo, queens);
+        return queens[0];
+    }
+}
@@ -0,0 +1,100 @@
+package ubc.cosc322.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ubc.cosc322.algorithms.BFSAmazons;
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.MoveGenerator;
+import ubc.cosc322.core.Position;
+
+/**
+ * Throughput of the Board operations the search calls most: move generation, copying, status checks and single random plies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoardBenchmark {
+    @Param({BenchmarkPositions.OPENING, BenchmarkPositions.MIDGAME, BenchmarkPositions.ENDGAME})
+    public String position;
+
+    private Board board;
+    private Board scratch;
+    private int queenX;
+    private int queenY;
+    private int queenSquare;
+    private final int[] squares = new int[MoveGenerator.MAX_MOVES_PER_SQUARE];
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final BFSAmazons regions = new BFSAmazons();
+
+    @Setup
+    public void setUp() {
+        board = BenchmarkPositions.create(position);
+        scratch = board.clone();
+        queenSquare = BenchmarkPositions.firstQueen(board, Board.P1);
+        queenX = queenSquare / Board.DEFAULT_BOARD_SIZE;
+        queenY = queenSquare % Board.DEFAULT_BOARD_SIZE;
+    }
+
+    @Benchmark
+    public List<Position> getLegalMoves() {
+        return board.getLegalMoves(queenX, queenY);
+    }
+
+    @Benchmark
+    public int generateIntoBuffer() {
+        return MoveGenerator.generate(board, queenSquare, squares, 0);
+    }
+
+    @Benchmark
+    public Board cloneBoard() {
+        return board.clone();
+    }
+
+    @Benchmark
+    public List<Board> getAllPossibleStates() {
+        return board.getAllPossibleStates(Board.P1);
+    }
+
+    @Benchmark
+    public int getAllPossibleMoves() {
+        return board.getAllPossibleMoves(Board.P1, moves);
+    }
+
+    @Benchmark
+    public Board randomPlay() {
+        scratch.copyFrom(board);
+        scratch.randomPlay(Board.P1);
+        return scratch;
+    }
+
+    @Benchmark
+    public int checkStatus() {
+        return board.checkStatus();
+    }
+
+    @Benchmark
+    public boolean analyzeRegions() {
+        regions.analyze(board);
+        return regions.isPartitioned();
+    }
+
+    @Benchmark
+    public boolean isPartitioned() {
+        return regions.isPartitioned(board);
+    }
+}
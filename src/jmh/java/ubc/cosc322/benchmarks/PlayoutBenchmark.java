@@ -0,0 +1,62 @@
+package ubc.cosc322.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ubc.cosc322.algorithms.PlayoutEngine;
+import ubc.cosc322.algorithms.TerritoryEvaluator;
+import ubc.cosc322.core.Board;
+
+/**
+ * Throughput of random playouts from fixed positions, the unit of work of every MCTS iteration: complete ones, ones cut
+ * off and scored by territory as the search plays them, and the territory evaluation on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayoutBenchmark {
+    @Param({BenchmarkPositions.OPENING, BenchmarkPositions.MIDGAME, BenchmarkPositions.ENDGAME})
+    public String position;
+
+    // Random plies before the territory evaluation, as in MonteCarloTreeSearch.
+    @Param({"6"})
+    public int cutoff;
+
+    private Board board;
+    private final Board scratch = new Board();
+    private final TerritoryEvaluator evaluator = new TerritoryEvaluator();
+
+    @Setup
+    public void setUp() {
+        board = BenchmarkPositions.create(position);
+    }
+
+    @Benchmark
+    public int playout() {
+        return PlayoutEngine.get().playout(board, Board.P1);
+    }
+
+    @Benchmark
+    public int cutoffPlayout() {
+        scratch.copyFrom(board);
+        return PlayoutEngine.get().playoutInPlace(scratch, Board.P1, cutoff);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return evaluator.evaluate(board, Board.P1);
+    }
+}
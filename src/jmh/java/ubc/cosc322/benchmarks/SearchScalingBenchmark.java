@@ -0,0 +1,65 @@
+package ubc.cosc322.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ubc.cosc322.algorithms.MonteCarloTreeSearch;
+import ubc.cosc322.core.Board;
+
+/**
+ * Wall-clock time of a search with a fixed number of iterations at different thread counts.
+ * The speedup of n threads is the score at 1 thread divided by the score at n threads; linear scaling halves the time
+ * every time the thread count doubles, up to the number of cores of the machine.
+ * The same work is timed for the shared-tree search ("tree") and for root-parallel search with a private tree per thread ("root").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchScalingBenchmark {
+    private static final long ITERATIONS = 20000;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int threads;
+
+    @Param({BenchmarkPositions.OPENING, BenchmarkPositions.MIDGAME})
+    public String position;
+
+    @Param({"tree", "root"})
+    public String mode;
+
+    private Board board;
+    private MonteCarloTreeSearch search;
+
+    @Setup
+    public void setUp() {
+        board = BenchmarkPositions.create(position);
+        search = new MonteCarloTreeSearch();
+        search.setThreads(threads);
+        search.setIterationLimit(ITERATIONS);
+        search.setRootParallel("root".equals(mode));
+    }
+
+    @TearDown
+    public void tearDown() {
+        search.shutdown();
+    }
+
+    @Benchmark
+    public Board findNextMove() {
+        return search.findNextMove(board, Board.P1);
+    }
+}
@@ -0,0 +1,67 @@
+package ubc.cosc322.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ubc.cosc322.algorithms.SearchTree;
+import ubc.cosc322.algorithms.TranspositionTable;
+import ubc.cosc322.algorithms.UCT;
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.MoveGenerator;
+
+/**
+ * Cost of UCT selection over a wide node of the SearchTree, such as the root of an opening position with every move
+ * revealed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UCTBenchmark {
+    @Param({"100", "2176"})
+    public int children;
+
+    private TranspositionTable table;
+    private SearchTree tree;
+
+    @Setup
+    public void setUp() {
+        table = new TranspositionTable(16L * 1024 * 1024);
+        tree = new SearchTree(16L * 1024 * 1024);
+        Board board = new Board();
+        tree.reset(board, Board.P1, false);
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        tree.expand(SearchTree.ROOT, board, Board.P1, buffer);
+        SplittableRandom random = new SplittableRandom(322L);
+        for (int i = 0; i < children; i++) {
+            int child = tree.activate(SearchTree.ROOT, children, board, Board.P1, buffer);
+            if (child == SearchTree.NONE) {
+                break;
+            }
+            // Give every child some statistics so no child short-circuits selection as unvisited.
+            int visits = 1 + random.nextInt(50);
+            for (int v = 0; v < visits; v++) {
+                tree.update(child, 1, random.nextBoolean() ? 10 : -10);
+            }
+            tree.update(SearchTree.ROOT, visits, 0);
+        }
+    }
+
+    @Benchmark
+    public int findBestChildWithUCTInSearchTree() {
+        return UCT.findBestChildWithUCT(tree, SearchTree.ROOT, table);
+    }
+}
@@ -1,252 +1,263 @@
 package ubc.cosc322.algorithms;
 
-import java.util.*;
+import java.util.Arrays;
 
 import ubc.cosc322.core.Board;
-
+import ubc.cosc322.core.MoveGenerator;
+
+/**
+ * Splits the empty squares of a board into regions and tells which queens touch each one.
+ *
+ * A region is a set of empty squares connected by king steps; queens and arrows separate regions, since nothing can move
+ * through them. A queen touches a region when it stands next to one of its squares, which is exactly when it can
+ * move into it. Once no region is touched by queens of both colours the board is partitioned: the players can no
+ * longer interfere with each other and the game is decided by how much of their own regions they can fill.
+ *
+ * analyze() labels every region in one pass: each unlabelled empty square seeds a breadth-first flood over an int queue,
+ * with the neighbours of a square taken from MoveGenerator's king-step masks and filtered against a mask of the squares
+ * still unlabelled. The queue is never reused, so it ends up listing every region's squares. The results live in flat
+ * arrays indexed by square and by region, so an analysis allocates nothing and is cheap enough to run inside playouts.
+ * An instance holds that scratch space and must not be shared between threads.
+ */
 public class BFSAmazons {
-
-    // Used to speed counts up if finished.
-    public int totalBlackCount = 0; // Player 1
-    public int totalWhiteCount = 0; // Player 2
-
-    Deque<BFSNode> queue; // Queue of nodes to be searched. Cannot contain arrows.
-    HashSet<BFSNode> visitedNodes; // Nodes already searched.
-    Deque<BFSNode> whiteQueens; // White queens found in the same partition as another white queen.
-    Deque<BFSNode> blackQueens; // Black queens found in the same partition as another black queen.
-
-    public BFSAmazons() {
-        // Initialize array
-        queue = new ArrayDeque<>();
-        visitedNodes = new HashSet<>();
-        whiteQueens = new ArrayDeque<>();
-        blackQueens = new ArrayDeque<>();
+    /**
+     * The label of a square that is not empty and therefore in no region.
+     */
+    public static final int NO_REGION = -1;
+    private static final int SQUARES = Board.DEFAULT_BOARD_SIZE * Board.DEFAULT_BOARD_SIZE;
+    // Queen bits of a region: one bit per queen, P1's queens in the low QUEENS_PER_PLAYER bits and P2's above them.
+    private static final int P1_QUEENS = (1 << MoveGenerator.QUEENS_PER_PLAYER) - 1;
+    private static final int P2_QUEENS = P1_QUEENS << MoveGenerator.QUEENS_PER_PLAYER;
+
+    private final int[] regionOf = new int[SQUARES];
+    private final int[] regionSize = new int[SQUARES]; // Indexed by region; there are never more regions than squares
+    private final int[] regionQueens = new int[SQUARES];
+    private final int[] regionStart = new int[SQUARES]; // Where each region's squares begin in squares
+    private final int[] squares = new int[SQUARES]; // The squares of all regions, region by region in flood order
+    private final int[] queens = new int[MoveGenerator.QUEENS_PER_PLAYER];
+    private int regionCount;
+    // The squares not yet labelled during analyze(), as the two mask words.
+    private long unlabelledLo;
+    private long unlabelledHi;
+
+    /**
+     * Labels the regions of a board, replacing the results of the previous call.
+     *
+     * @param board The position.
+     * @return The number of regions.
+     */
+    public int analyze(Board board) {
+        Arrays.fill(regionOf, NO_REGION);
+        regionCount = 0;
+        unlabelledLo = ~board.getOccupiedLo();
+        unlabelledHi = ~board.getOccupiedHi() & Board.HI_WORD_MASK;
+        int labelled = 0;
+        while ((unlabelledLo | unlabelledHi) != 0) {
+            int seed = unlabelledLo != 0 ? Long.numberOfTrailingZeros(unlabelledLo)
+                    : 64 + Long.numberOfTrailingZeros(unlabelledHi);
+            labelled = fill(seed, regionCount++, labelled);
+        }
+        markQueens(board, Board.P1, 0);
+        markQueens(board, Board.P2, MoveGenerator.QUEENS_PER_PLAYER);
+        return regionCount;
     }
 
-    // Returns state of the board.
-    // 0 if partition in progress, 1 if finished.
-    public int searchBoardPartition(int[][] board, int x, int y, int color) {
-        // 1. Check that the initial queen is not completely blocked. If it is, the partition is complete.
-        // 2. Check if there is an adjacent queen of the same color. If it is, add to list and continue search.
-        // 3. Check if there is an adjacent queen of a different color. If it is, check if it is blocked.
-        //    If it is blocked, continue search. Otherwise, return in progress.
-
-        // System.out.println("NEW SEARCH");
-
-        // Variables
-        BFSNode currentNode; //
-        int tileValue, tileValue2;
-        int temporaryCount = 0; // initial queen position does not count.
-
-        // If a queen of the same color was found in a previous partition, then the partition has already been searched.
-        if (color == 1) {
-            if (blackQueens.contains(new BFSNode(x, y, color)))
-                return 1;
-        } else {
-            if (whiteQueens.contains(new BFSNode(x, y, color)))
-                return 1;
-        }
+    /**
+     * @return The number of regions found by the last analysis.
+     */
+    public int getRegionCount() {
+        return regionCount;
+    }
 
-        // Search begins here
-        queue.addLast(new BFSNode(x, y, color)); // Initial queen node.
+    /**
+     * @param square A square index.
+     * @return The region of the square, from 0 to getRegionCount() - 1, or NO_REGION if the square is occupied.
+     */
+    public int getRegion(int square) {
+        return regionOf[square];
+    }
 
-        /* QUEEN ADJACENT SEARCH */
-        // Do an initial check on the first node (queen), different rules than free space
-        currentNode = queue.removeFirst();
+    /**
+     * @param region A region.
+     * @return The number of empty squares in the region.
+     */
+    public int getRegionSize(int region) {
+        return regionSize[region];
+    }
 
-        boolean isBlocked = true;
-        for (int i = -1; i < 2; i++) { // -1, 0, 1
-            for (int j = -1; j < 2; j++) { // -1, 0, 1
+    /**
+     * @param region A region.
+     * @param i The index of a square in the region, below getRegionSize(region).
+     * @return The i-th square of the region.
+     */
+    public int getRegionSquare(int region, int i) {
+        return squares[regionStart[region] + i];
+    }
 
-                if (i != 0 || j != 0) { // Skip the current node, where x=x and y=y
+    /**
+     * Tells which queens stand next to a region. Bit i (for i below MoveGenerator.QUEENS_PER_PLAYER) is set when the
+     * i-th queen returned by Board.getQueenSquares(P1, ...) touches the region, and bit QUEENS_PER_PLAYER + i likewise
+     * for the i-th queen of P2.
+     *
+     * @param region A region.
+     * @return The queens touching the region.
+     */
+    public int getRegionQueens(int region) {
+        return regionQueens[region];
+    }
 
-                    // Only consider nodes on the board.
-                    if((currentNode.x+i) > -1 && (currentNode.x+i) < Board.DEFAULT_BOARD_SIZE
-                            && (currentNode.y+j) > -1 && (currentNode.y+j) < Board.DEFAULT_BOARD_SIZE) {
+    /**
+     * @param region A region.
+     * @param playerNo Board.P1 or Board.P2.
+     * @return true if at least one queen of the player touches the region.
+     */
+    public boolean isTouchedBy(int region, int playerNo) {
+        return (regionQueens[region] & (playerNo == Board.P1 ? P1_QUEENS : P2_QUEENS)) != 0;
+    }
 
-                        // Check for complete blockage
-                        if (board[currentNode.x+i][currentNode.y+j] == 0) {
-                            isBlocked = false;
-                        }
+    /**
+     * @param region A region.
+     * @return true if queens of both players touch the region.
+     */
+    public boolean isContested(int region) {
+        return (regionQueens[region] & P1_QUEENS) != 0 && (regionQueens[region] & P2_QUEENS) != 0;
+    }
 
-                    }
-                }
+    /**
+     * @return true if no region is touched by queens of both players, so neither side can take squares from the other.
+     */
+    public boolean isPartitioned() {
+        for (int region = 0; region < regionCount; region++) {
+            if (isContested(region)) {
+                return false;
             }
         }
+        return true;
+    }
 
-        if (isBlocked) {
-            // System.out.println("IS BLOCKED");
-            return 1; // Partition finished.
+    /**
+     * Checks whether a board is partitioned without labelling its regions: a king-step flood over the empty squares
+     * from around P1's queens that stops as soon as it reaches a square next to a P2 queen. On a board that is not
+     * partitioned the flood usually meets the other side within a few steps, which makes this much cheaper than
+     * analyze() in the common case. Leaves the results of the last analysis untouched.
+     *
+     * Queens are walls to the flood just like arrows, so two opposing queens standing next to each other with no empty
+     * square between them never meet. That is intended: queens cannot capture, so the players only interfere through
+     * empty squares they can both reach, and the board is partitioned as soon as no empty square is shared.
+     *
+     * @param board The position.
+     * @return true if no region is touched by queens of both players.
+     */
+    public boolean isPartitioned(Board board) {
+        long emptyLo = ~board.getOccupiedLo();
+        long emptyHi = ~board.getOccupiedHi() & Board.HI_WORD_MASK;
+        long targetLo = 0;
+        long targetHi = 0;
+        int count = board.getQueenSquares(Board.P2, queens);
+        for (int i = 0; i < count; i++) {
+            targetLo |= MoveGenerator.neighboursLo(queens[i]);
+            targetHi |= MoveGenerator.neighboursHi(queens[i]);
         }
-
-        /* ADJACENT SEARCH, QUEEN NOT BLOCKED */
-        for (int i = -1; i < 2; i++) { // -1, 0, 1
-            for (int j = -1; j < 2; j++) { // -1, 0, 1
-
-                if (i != 0 || j != 0) { // Skip the current node, where x=x and y=y
-
-                    // Only consider nodes on the board.
-                    if((currentNode.x+i) > -1 && (currentNode.x+i) < Board.DEFAULT_BOARD_SIZE
-                            && (currentNode.y+j) > -1 && (currentNode.y+j) < Board.DEFAULT_BOARD_SIZE) { // Skip nodes outside of board
-
-                        // Get the tile value of the adjacent node
-                        tileValue = board[currentNode.x+i][currentNode.y+j];
-
-                        // If the tile value is not a free space
-                        if (tileValue != 0 && tileValue != 3) {
-
-                            // If there is a queen of the same color, add to list and continue search.
-                            if (tileValue == color) {
-
-                                if (color == 1) {
-                                    blackQueens.add(currentNode);
-                                } else {
-                                    whiteQueens.add(currentNode);
-                                }
-
-                                // If there is a queen of a different color, if it is not blocked, return in progress.
-                            } else {
-
-                                // Check for trapped opposing queen
-                                for (int k = -1; k < 2; k++) { // -1, 0 , -1
-                                    for (int l = -1; l < 2; l++) { // -1, 0 , -1
-                                        if (k != 0 || l != 0) {
-                                            if( currentNode.x+i+k >= 0 && currentNode.x+i+k < Board.DEFAULT_BOARD_SIZE
-                                                    && currentNode.y+j+l >= 0 && currentNode.y+j+l < Board.DEFAULT_BOARD_SIZE) {
-                                                tileValue2 = board[currentNode.x+i+k][currentNode.y+j+l];
-                                                if (tileValue2 == 0) {
-                                                    return 0; // other queen can move, so in progress.
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-
-                            }
-
-                            // If the tile is a free space
-                        } else if (tileValue == 0){
-                            // Check that we havent seen this node already
-                            BFSNode checkNode = new BFSNode(currentNode.x+i, currentNode.y+j, color);
-                            if (!visitedNodes.contains(checkNode)) {
-                                queue.addLast(checkNode);
-                                visitedNodes.add(checkNode);
-                                temporaryCount++;
-                            }
-                        }
-                    }
-                }
+        long frontierLo = 0;
+        long frontierHi = 0;
+        count = board.getQueenSquares(Board.P1, queens);
+        for (int i = 0; i < count; i++) {
+            frontierLo |= MoveGenerator.neighboursLo(queens[i]);
+            frontierHi |= MoveGenerator.neighboursHi(queens[i]);
+        }
+        frontierLo &= emptyLo;
+        frontierHi &= emptyHi;
+        long reachedLo = frontierLo;
+        long reachedHi = frontierHi;
+        while ((frontierLo | frontierHi) != 0) {
+            if ((frontierLo & targetLo) != 0 || (frontierHi & targetHi) != 0) {
+                return false;
+            }
+            long nextLo = 0;
+            long nextHi = 0;
+            for (long bits = frontierLo; bits != 0; bits &= bits - 1) {
+                int square = Long.numberOfTrailingZeros(bits);
+                nextLo |= MoveGenerator.neighboursLo(square);
+                nextHi |= MoveGenerator.neighboursHi(square);
             }
+            for (long bits = frontierHi; bits != 0; bits &= bits - 1) {
+                int square = 64 + Long.numberOfTrailingZeros(bits);
+                nextLo |= MoveGenerator.neighboursLo(square);
+                nextHi |= MoveGenerator.neighboursHi(square);
+            }
+            frontierLo = nextLo & emptyLo & ~reachedLo;
+            frontierHi = nextHi & emptyHi & ~reachedHi;
+            reachedLo |= frontierLo;
+            reachedHi |= frontierHi;
         }
+        return true;
+    }
 
-        /* REMAINING PARTITION SEARCH  */
-        int iter = 0;
-        while(!queue.isEmpty()) { // Continue as long as free spaces are found
-            currentNode = queue.removeFirst();
-            visitedNodes.add(currentNode);
-            iter++;
-            if (iter > 500)
-                return -1;
-
-            for (int i = -1; i < 2; i++) { // -1, 0, -1
-                for (int j = -1; j < 2; j++) { // -1, 0, -1
-
-                    if (i != 0 || j != 0) { // Skip the current node, x=x, y=y
-
-                        if(currentNode.x+i >= 0 && currentNode.x+i < Board.DEFAULT_BOARD_SIZE
-                                && currentNode.y+j >= 0 && currentNode.y+j < Board.DEFAULT_BOARD_SIZE) { // Skip nodes outside of board
-
-                            // Get the tile value of the adjacent node
-                            tileValue = board[currentNode.x+i][currentNode.y+j];
-                            // If the tile value is not a free space
-                            if (tileValue != 0 && tileValue != 3) {
-
-                                // Return if we find a queen of a different color
-                                if(tileValue != color) {
-                                    return 0;
-
-                                    // Found another queen in same partition. Continue, add found queen to queens list.
-                                } else if (tileValue == color) {
-
-                                    // Don't return, but add to list of queens
-                                    if (color == 1) {
-                                        blackQueens.add(currentNode);
-                                    } else {
-                                        whiteQueens.add(currentNode);
-                                    }
-                                }
-
-                                // If the tile is a free space
-                            } else if (tileValue == 0) {
-                                // Check that we havent seen this node already
-                                BFSNode checkNode = new BFSNode((currentNode.x+i), (currentNode.y+j), color);
-                                if (!visitedNodes.contains(checkNode)) {
-                                    queue.addLast(checkNode);
-                                    visitedNodes.add(checkNode);
-                                    temporaryCount++;
-                                }
-                            }
-                        }
-                    }
-                }
+    /**
+     * Adds up the regions only a player's queens touch. Every square of such a region is the player's; whether the
+     * queens can actually fill all of it is a separate question (see the region's shape).
+     *
+     * @param playerNo Board.P1 or Board.P2.
+     * @return The number of squares in regions touched by the player's queens and no others.
+     */
+    public int getExclusiveSquares(int playerNo) {
+        int squares = 0;
+        for (int region = 0; region < regionCount; region++) {
+            if (isTouchedBy(region, playerNo) && !isTouchedBy(region, 3 - playerNo)) {
+                squares += regionSize[region];
             }
         }
-
-        if (color == 1)
-            totalBlackCount += temporaryCount;
-        else
-            totalWhiteCount += temporaryCount;
-        return 1;
+        return squares;
     }
 
-
-    public int evaluateBoardStatus() {
-        // Assuming you have a method to evaluate board status based on the current state of counts
-        // This method should return DRAW, P1, or P2 based on the territories controlled by each player
-        if (totalBlackCount != 0 && totalWhiteCount == 0) {
-            return Board.P1;
-        } else if (totalWhiteCount != 0 && totalBlackCount == 0) {
-            return Board.P2;
-        } else {
-            return Board.IN_PROGRESS;
+    // Labels the region containing the seed square by breadth-first flood, queueing its squares from the given
+    // position of squares on. Returns the position after the region.
+    private int fill(int seed, int region, int start) {
+        claim(seed, region);
+        int tail = start + 1;
+        squares[start] = seed;
+        for (int head = start; head < tail; head++) {
+            int square = squares[head];
+            for (long bits = MoveGenerator.neighboursLo(square) & unlabelledLo; bits != 0; bits &= bits - 1) {
+                int next = Long.numberOfTrailingZeros(bits);
+                claim(next, region);
+                squares[tail++] = next;
+            }
+            for (long bits = MoveGenerator.neighboursHi(square) & unlabelledHi; bits != 0; bits &= bits - 1) {
+                int next = 64 + Long.numberOfTrailingZeros(bits);
+                claim(next, region);
+                squares[tail++] = next;
+            }
         }
+        regionStart[region] = start;
+        regionSize[region] = tail - start;
+        regionQueens[region] = 0;
+        return tail;
     }
 
-}
-
-// Helper class
-class BFSNode {
-    public int x;
-    public int y;
-    public int color;
-
-    BFSNode(int x, int y, int color) {
-        this.x = x;
-        this.y = y;
-        this.color = color;
+    private void claim(int square, int region) {
+        regionOf[square] = region;
+        if (square < 64) unlabelledLo &= ~(1L << square);
+        else unlabelledHi &= ~(1L << square);
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) {
-            return true;
-        }
-        if (o == null || getClass() != o.getClass()) {
-            return false;
+    // Records every region each queen of a player stands next to.
+    private void markQueens(Board board, int playerNo, int firstBit) {
+        int count = board.getQueenSquares(playerNo, queens);
+        for (int i = 0; i < count; i++) {
+            int bit = 1 << (firstBit + i);
+            for (long bits = MoveGenerator.neighboursLo(queens[i]); bits != 0; bits &= bits - 1) {
+                int region = regionOf[Long.numberOfTrailingZeros(bits)];
+                if (region != NO_REGION) {
+                    regionQueens[region] |= bit;
+                }
+            }
+            for (long bits = MoveGenerator.neighboursHi(queens[i]); bits != 0; bits &= bits - 1) {
+                int region = regionOf[64 + Long.numberOfTrailingZeros(bits)];
+                if (region != NO_REGION) {
+                    regionQueens[region] |= bit;
+                }
+            }
         }
-        BFSNode node = (BFSNode) o;
-
-        boolean result = (this.x == node.x && this.y == node.y);
-
-        return result;
-    }
-
-    @Override
-    public int hashCode() {
-        int result = 17;
-        result = 31 * result + x;
-        result = 31 * result + y;
-        return result;
     }
 }
-
@@ -1,31 +1,112 @@
 package ubc.cosc322.algorithms;
 
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
 
 import ubc.cosc322.core.Board;
+import ubc.cosc322.core.Move;
+import ubc.cosc322.core.MoveGenerator;
 
 /**
  * Implements the Monte Carlo Tree Search (MCTS) algorithm for the Game of the Amazons.
  * The class iteratively builds a game tree, evaluates the possible moves using simulations, and selects the best move based on the simulation outcomes.
  */
 public class MonteCarloTreeSearch {
+    private static final Logger LOG = Logger.getLogger(MonteCarloTreeSearch.class.getName());
     // Lists to hold the positions of black and white queens on the board.
     List<List<Integer>> blackPositions = new ArrayList<>();
     List<List<Integer>> whitePositions = new ArrayList<>();
     final String OPPONENT = "white"; // Assumed opponent color.
     static final int WIN_SCORE = 10; // Score indicating a win in simulations.
+    // Virtual loss: a thread descending through a node counts a visit and a lost game there until its playout returns,
+    // so concurrent threads see the node as worse and spread out over other branches.
+    static final int VIRTUAL_LOSS = -WIN_SCORE;
     int level; // Represents the current level in the tree.
-    final int UPPER_TIME_LIMIT = 25000;
+    static final long SUPERVISE_INTERVAL_MILLIS = 50; // How often the time manager looks at a running search
+    static final int PONDER_TIME_LIMIT = 30000; // Upper bound on one pondering session, in case the reply never comes
+    static final long TRANSPOSITION_TABLE_BYTES = 64L * 1024 * 1024; // Default memory budget of the transposition table
+    static final long SEARCH_TREE_BYTES = 256L * 1024 * 1024; // Default memory budget of the search tree, at most a quarter of the heap
+    // A leaf is expanded, so that progressive widening starts revealing its children, only after this many visits, so
+    // the tree's memory goes to positions the search keeps coming back to.
+    static final int EXPANSION_VISITS = 8;
+    // A full tree is pruned until this fraction of its nodes is free again.
+    static final double PRUNE_FRACTION = 0.5;
+    // Random plies of a playout before the position is scored by territory instead of being played to the end.
+    static final int PLAYOUT_CUTOFF = 6;
+    // Longest possible path from the root: every move fills a square, and two-stage mode uses two levels per move.
+    private static final int MAX_PATH = 2 * Board.DEFAULT_BOARD_SIZE * Board.DEFAULT_BOARD_SIZE + 2;
+    // Per-thread scratch space of an iteration, so iterations allocate nothing.
+    private static final ThreadLocal<IterationContext> CONTEXTS = ThreadLocal.withInitial(IterationContext::new);
     public static int numberOfNodes = 0;
-    long end;
+    // Completed playouts, counted once per playout rather than on every status check.
+    private final LongAdder gamesPlayed = new LongAdder();
+    // Statistics shared between nodes that reach the same position through different move orders.
+    private final TranspositionTable transpositionTable;
+    private final long transpositionTableBytes;
+    // The search trees: one shared by all workers, or one per worker in root-parallel mode. They are allocated once and
+    // kept across moves, so the next search can continue from the subtree of the position it is asked about.
+    // A tree never grows past its budget: when it fills up, its least visited subtrees are collapsed (see pruneTree).
+    private long searchTreeBytes;
+    private SearchTree[] trees;
+    // Stops the workers sharing one tree while it is pruned; created for every search.
+    private Phaser pruneBarrier;
+    private final LongAdder prunedNodes = new LongAdder();
+    // Root-parallel mode: every worker grows a private tree with a private transposition table, and the root children
+    // of all trees are merged when the move is chosen. The tables are kept across moves like the shared one.
+    private boolean rootParallel = false;
+    private TranspositionTable[] workerTables;
+    // When enabled, each move is split into a queen step node and an arrow node, so UCT first ranks the ~100 queen
+    // steps instead of spreading visits over thousands of combined moves.
+    private boolean twoStageSearch = false;
+    // Number of worker threads that descend the shared tree together.
+    private int threads = Runtime.getRuntime().availableProcessors();
+    // Random plies per playout before the territory evaluation; Integer.MAX_VALUE plays every game to the end.
+    private int playoutCutoff = PLAYOUT_CUTOFF;
+    // Optional cap on the iterations of one search, so a fixed amount of work can be timed at different thread counts.
+    private long iterationLimit = Long.MAX_VALUE;
+    private final AtomicLong iterations = new AtomicLong();
+    // Long-lived worker threads, created on the first search and reused for every move after it.
+    private SearchScheduler scheduler;
+    private final SearchScheduler.Worker searchWorker = this::searchWorker;
+    // The iteration limit of the search currently handed to the workers.
+    private long searchIterationLimit;
+    // Pondering: after our move is played, the workers keep searching the retained tree in the background until the
+    // opponent's reply arrives.
+    private boolean pondering;
+    // Thinking time per move, chosen by game phase and branching factor and adjusted while the search runs.
+    private final TimeManager timeManager = new TimeManager();
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES]; // Root moves, counted for the time budget
+    volatile long end; // Set to 0 to stop a running search early
 
     /**
      * Initializes the MonteCarloTreeSearch object and sets up the initial positions of the queens on the board.
      */
     public MonteCarloTreeSearch() {
+        this(TRANSPOSITION_TABLE_BYTES);
+    }
+
+    /**
+     * Initializes the MonteCarloTreeSearch object with a transposition table of the given size.
+     *
+     * @param transpositionTableBytes The memory budget of the transposition table, in bytes.
+     */
+    public MonteCarloTreeSearch(long transpositionTableBytes) {
+        this(transpositionTableBytes, Math.min(SEARCH_TREE_BYTES, Runtime.getRuntime().maxMemory() / 4));
+    }
+
+    /**
+     * Initializes the MonteCarloTreeSearch object with a transposition table and search tree of the given sizes.
+     *
+     * @param transpositionTableBytes The memory budget of the transposition table, in bytes.
+     * @param searchTreeBytes The memory budget of the search tree (of all trees together in root-parallel mode), in bytes.
+     */
+    public MonteCarloTreeSearch(long transpositionTableBytes, long searchTreeBytes) {
+        this.transpositionTable = new TranspositionTable(transpositionTableBytes);
+        this.transpositionTableBytes = transpositionTableBytes;
+        this.searchTreeBytes = searchTreeBytes;
         initializePositions();
     }
 
@@ -46,6 +127,115 @@ public class MonteCarloTreeSearch {
         whitePositions.add(Arrays.asList(10, 4));
     }
 
+    /**
+     * Enables or disables the two-stage search mode, in which the tree alternates queen step nodes and arrow nodes.
+     *
+     * @param twoStageSearch true to split every move into a queen step and an arrow level.
+     */
+    public void setTwoStageSearch(boolean twoStageSearch) {
+        this.twoStageSearch = twoStageSearch;
+    }
+
+    /**
+     * Switches between the shared-tree search (the default), where all workers descend one tree, and root-parallel
+     * search, where each worker searches its own tree from the same position and the trees only meet at the final decision.
+     *
+     * @param rootParallel true to give every worker a private tree.
+     */
+    public void setRootParallel(boolean rootParallel) {
+        this.rootParallel = rootParallel;
+    }
+
+    /**
+     * Sets the memory budget of the search tree (of all trees together in root-parallel mode). The tree is preallocated
+     * at this size, and once it is full the least visited subtrees are pruned so the search can keep expanding.
+     * A tree always has room for at least SearchTree.MIN_CAPACITY nodes, whatever the budget.
+     * A change discards the tree kept from the last search.
+     *
+     * @param searchTreeBytes The budget, in bytes.
+     */
+    public void setSearchTreeBytes(long searchTreeBytes) {
+        stopPondering();
+        if (searchTreeBytes != this.searchTreeBytes) {
+            this.searchTreeBytes = searchTreeBytes;
+            trees = null; // Reallocated by the next search
+        }
+    }
+
+    /**
+     * Sets how many random moves a playout plays before the position is scored by territory (see TerritoryEvaluator).
+     * Shorter playouts run faster and are less noisy, at the price of trusting the evaluation.
+     *
+     * @param playoutCutoff The number of random moves, or Integer.MAX_VALUE to play every playout to the end of the game.
+     */
+    public void setPlayoutCutoff(int playoutCutoff) {
+        this.playoutCutoff = Math.max(0, playoutCutoff);
+    }
+
+    /**
+     * Sets the number of worker threads that search the shared tree.
+     *
+     * @param threads The number of threads, at least 1.
+     */
+    public void setThreads(int threads) {
+        stopPondering();
+        this.threads = Math.max(1, threads);
+        if (scheduler != null && scheduler.threads() != this.threads) {
+            scheduler.shutdown();
+            scheduler = null; // Recreated with the new size by the next search
+        }
+    }
+
+    /**
+     * Caps the number of iterations of each search. The search still stops at the time limit if it comes first.
+     *
+     * @param iterationLimit The maximum number of iterations, or Long.MAX_VALUE for no cap.
+     */
+    public void setIterationLimit(long iterationLimit) {
+        this.iterationLimit = iterationLimit;
+    }
+
+    /**
+     * Stops the search threads. A later search starts new ones.
+     */
+    public void shutdown() {
+        stopPondering();
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * @return The number of iterations run by the last search.
+     */
+    public long getIterations() {
+        return Math.min(iterations.get(), iterationLimit);
+    }
+
+    /**
+     * @return The number of playouts, ended or cut off and evaluated, over every search run by this object.
+     */
+    public long getGamesPlayed() {
+        return gamesPlayed.sum();
+    }
+
+    /**
+     * Reads the tree kept between searches, so tree reuse can be checked against the nodes it should retain.
+     *
+     * @return The shared tree, or the first worker's tree in root-parallel mode; null before the first search.
+     */
+    SearchTree getSearchTree() {
+        return trees == null ? null : trees[0];
+    }
+
+    /**
+     * @return true if a search or pondering session still has workers inside the tree.
+     */
+    boolean isSearching() {
+        return scheduler != null && scheduler.isRunning();
+    }
+
     /**
      * Sends a move message to the game server with the specified queen positions and the arrow position.
      *
@@ -60,142 +250,517 @@ public class MonteCarloTreeSearch {
 
     /**
      * Finds the next best move using the MCTS algorithm.
+     * Every iteration descends from the root with UCT, expands one new node where progressive widening allows it,
+     * simulates a random game from there and backpropagates the result along the path.
+     * All worker threads run iterations on the same tree at the same time until the deadline; virtual loss keeps
+     * them from piling into the same branch, and the node statistics are atomics so no thread locks a node to update them.
+     * In root-parallel mode each worker searches a private tree instead, and the visits of the root children of all
+     * trees are summed per move before the most visited move is chosen.
+     * The thinking time comes from the TimeManager and is adjusted while the search runs.
      *
      * @param board The current game board.
      * @param playerNo The player number.
      * @return The updated board after the best move is applied.
      */
     public Board findNextMove(Board board, int playerNo) {
-        end = System.currentTimeMillis() + UPPER_TIME_LIMIT;
-        Node rootNode = new Node(playerNo);
-        rootNode.setState(board);
-        expandNode(rootNode, rootNode.getPlayerNo());
-        System.out.println("Size of child array from root node: "+rootNode.getChildArray().size());
-        // Use a single threaded context to manage the overall time-bound loop.
-        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-
-        while (System.currentTimeMillis() < end) {
-            List<Callable<Void>> tasks = new ArrayList<>();
-            for (Node childNode : rootNode.getChildren()) {
-                Callable<Void> task = () -> {
-                    simulateRandomPlayout(childNode, playerNo);
-                    return null;
-                };
-                tasks.add(task);
+        stopPondering();
+        allocateTrees();
+        long bankedVisits = 0;
+        for (SearchTree tree : trees) {
+            if (tree.hasRoot() && tree.getRootPlayer() == playerNo && tree.isTwoStage() == twoStageSearch
+                    && tree.getRootState().getHash() == board.getHash()) {
+                bankedVisits += tree.getVisits(SearchTree.ROOT);
+            } else {
+                tree.reset(board, playerNo, twoStageSearch);
             }
-            try {
-                executor.invokeAll(tasks); // Executes in parallel
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
-        executor.shutdown();
-        System.out.println("Games played: "+Board.gamesPlayed);
-        //System.out.println("Score of root node " + rootNode.getScore());
-        Node winnerNode = selectPromisingNode(rootNode);
-
-        //Node winnerNode = rootNode.getChildWithMaxScore();
-        System.out.println("Winner node child with highest score: "+winnerNode.getScore());
-        System.out.println("Number of children for node: " + rootNode.getChildren().size());
-        numberOfNodes = numberOfNodes + (rootNode.getChildren().size());
-        if (winnerNode == null) {
-            System.out.println("winnerNode = null");
+        }
+        if (bankedVisits > 0) {
+            LOG.info("Reusing search tree with " + bankedVisits + " visits");
+        }
+        if (rootParallel && (workerTables == null || workerTables.length != threads)) {
+            workerTables = new TranspositionTable[threads];
+            for (int i = 0; i < threads; i++) {
+                workerTables[i] = new TranspositionTable(transpositionTableBytes / threads);
+            }
+        }
+        iterations.set(0);
+        // A fixed amount of work (see setIterationLimit) is not time managed; it only stops at the hard limit.
+        boolean timeManaged = iterationLimit == Long.MAX_VALUE;
+        long budget = timeManaged ? timeManager.allocate(board, board.getAllPossibleMoves(playerNo, moveBuffer))
+                : TimeManager.HARD_LIMIT_MILLIS;
+        long start = System.currentTimeMillis();
+        end = start + budget;
+        if (scheduler == null) {
+            scheduler = new SearchScheduler(threads);
+        }
+        this.searchIterationLimit = iterationLimit;
+        prunedNodes.reset();
+        pruneBarrier = newPruneBarrier();
+        scheduler.start(searchWorker);
+        if (timeManaged) {
+            superviseSearch(start, budget);
+        }
+        scheduler.await(); // Returns when every worker has reached the deadline or the iteration limit
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        if (timeManaged) {
+            timeManager.moveFinished(budget, elapsed);
+            LOG.info("Time budget: " + budget + " ms, used: " + elapsed + " ms");
+        }
+        LOG.info("Games played: " + gamesPlayed.sum() + ", iterations: " + getIterations() + " on " + threads
+                + " threads (" + getIterations() * 1000 / elapsed + "/s)");
+        int used = 0;
+        for (SearchTree tree : trees) {
+            used += tree.size();
+        }
+        LOG.info("Search tree nodes: " + used + ", pruned: " + prunedNodes.sum());
+        // The final decision takes the most visited child, which is more robust than the one with the best UCT value.
+        int[] roots = new int[trees.length];
+        Map<Integer, long[]> rootMoves = mergeChildren(trees, roots);
+        int bestMove = mostVisitedMove(rootMoves);
+
+        LOG.info("Number of children for node: " + rootMoves.size());
+        numberOfNodes = numberOfNodes + rootMoves.size();
+        if (bestMove == Move.NONE) {
+            return playAnyMove(board, playerNo);
+        }
+        LOG.info("Winner node child with highest score: " + rootMoves.get(bestMove)[1]);
+        if (!Move.hasArrow(bestMove)) {
+            // Complete the chosen queen step with its most visited arrow.
+            int[] queenSteps = new int[trees.length];
+            for (int i = 0; i < trees.length; i++) {
+                queenSteps[i] = trees[i].findChild(SearchTree.ROOT, bestMove);
+            }
+            int arrowMove = mostVisitedMove(mergeChildren(trees, queenSteps));
+            if (arrowMove == Move.NONE) {
+                // The queen step was never expanded; any arrow will do, and the square it left is always one.
+                arrowMove = Move.encode(Move.from(bestMove), Move.to(bestMove), Move.from(bestMove));
+            }
+            bestMove = arrowMove;
+        }
+        Board result = board.clone();
+        result.makeMove(bestMove);
+        // Keep the trees for the next search, moved down past the move we are about to play.
+        applyMove(bestMove);
+        LOG.info("Winner node found: " + Move.toString(bestMove));
+        return result;
+    }
+
+    /**
+     * Falls back to a random legal move when the search revealed no root move at all, for example because it was
+     * stopped before its first iteration.
+     *
+     * @param board The current game board.
+     * @param playerNo The player to move.
+     * @return The board after the move, or the board itself if the player has no legal move.
+     */
+    private Board playAnyMove(Board board, int playerNo) {
+        Board result = board.clone();
+        int move = PlayoutEngine.get().randomPly(result, playerNo);
+        if (move == Move.NONE) {
+            LOG.warning("No legal move for player " + playerNo);
             return board;
         }
-        System.out.println("Winner node found.");
-        //Board.printBoard(winnerNode.getState().getBoard());
-        return winnerNode.getState();
+        LOG.warning("The search found no move; playing a random one: " + Move.toString(move));
+        applyMove(move);
+        return result;
+    }
+
+    // Creates the search trees for the current mode and thread count, or keeps the existing ones if they still fit.
+    private void allocateTrees() {
+        int count = rootParallel ? threads : 1;
+        if (trees == null || trees.length != count) {
+            trees = null; // Let the old arrays go before allocating the new ones
+            SearchTree[] allocated = new SearchTree[count];
+            for (int i = 0; i < count; i++) {
+                allocated[i] = new SearchTree(searchTreeBytes / count);
+            }
+            trees = allocated;
+        }
     }
 
     /**
-     * Selects the most promising node to explore based on the UCT value.
+     * Watches a running search and moves its deadline: to now as soon as the most visited root move can no longer be
+     * overtaken, and further out when the deadline comes close while the two best moves are still close to each other.
+     * Returns when the workers have stopped.
      *
-     * @param node The node from which to select the promising node.
-     * @return The selected promising node.
+     * @param start When the search started.
+     * @param budget The time budget of the search.
      */
-    public Node selectPromisingNode(Node rootNode) {
-        //System.out.println("selectpromisingnode activated");
-        //node with the highest amount of playouts is returned
-        Node node;
-        node = UCT.findBestNodeWithUCT(rootNode);
-        return node;
+    private void superviseSearch(long start, long budget) {
+        long startVisits = rootVisits(); // Visits banked by tree reuse do not count towards the search speed
+        try {
+            while (!scheduler.await(SUPERVISE_INTERVAL_MILLIS)) {
+                long now = System.currentTimeMillis();
+                long deadline = end;
+                long[] top = topTwoVisits();
+                double visitsPerMilli = (rootVisits() - startVisits) / (double) Math.max(1, now - start);
+                if (now - start >= TimeManager.MIN_LIMIT_MILLIS && visitsPerMilli > 0
+                        && timeManager.canStopEarly(top[0], top[1], visitsPerMilli, deadline - now)) {
+                    end = 0;
+                } else if (deadline - now <= SUPERVISE_INTERVAL_MILLIS) {
+                    double bestValue = top[0] > 0 ? top[2] / (top[0] * Node.WIN_SCORE_VALUE) : 0;
+                    end = timeManager.extend(top[0], top[1], bestValue, start, budget, deadline);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private void simulateRandomPlayout(Node currentNode, int playerNo) {
-        int counter = 0;
-        while (currentNode.getState().checkStatus() == Board.IN_PROGRESS && System.currentTimeMillis() < end) {
-            //System.out.println("Debug 1.2");
-            // Perform a random move and create a new state
-            Board nextBoardState = currentNode.getState().clone();
-            nextBoardState.randomPlay(playerNo); // Assuming this method updates the board state
+    private long rootVisits() {
+        long visits = 0;
+        for (SearchTree tree : trees) {
+            visits += tree.getVisits(SearchTree.ROOT);
+        }
+        return visits;
+    }
 
-            // Create a new node for this state and link it
-            Node childNode = new Node(playerNo);
-            childNode.setState(nextBoardState);
-            synchronized (currentNode) {
-                //Following line prints out boards synchronized so we can see the states
-                //Board.printSynchronizedBoard(childNode.getState());
-                currentNode.addChild(childNode);
+    // Visits of the most and second most visited root moves and the score of the most visited one, summed over the
+    // trees of a root-parallel search.
+    private long[] topTwoVisits() {
+        long best = 0;
+        long second = 0;
+        long bestScore = 0;
+        for (long[] stats : mergeChildren(trees, new int[trees.length]).values()) {
+            if (stats[0] > best) {
+                second = best;
+                best = stats[0];
+                bestScore = stats[1];
+            } else if (stats[0] > second) {
+                second = stats[0];
             }
-            childNode.setNodeDepth(currentNode.getNodeDepth()+1);
+        }
+        return new long[]{best, second, bestScore};
+    }
 
-            // Prepare for the next iteration
-            currentNode = childNode; // Move the "focus" to the child node for the next iteration
-            playerNo = 3 - playerNo; // Toggle Players
-            counter++;
-            //System.out.println("Debug: status of current node state - " + childNode.getState().checkStatus());
+    /**
+     * Tells the search that a move was played on the board, so the tree kept from the last search can follow it.
+     * The child for the move becomes the new root and the rest of the tree is released. The search calls this for its
+     * own moves; the caller must call it for every opponent move, or the next search starts from a fresh tree.
+     *
+     * @param move The encoded move (see Move) that was played.
+     */
+    public void applyMove(int move) {
+        stopPondering();
+        if (trees == null) {
+            return;
+        }
+        for (SearchTree tree : trees) {
+            if (!tree.hasRoot()) {
+                continue;
+            }
+            int node = followMove(tree, move);
+            if (node == SearchTree.NONE) {
+                tree.clear(); // The tree never explored the move
+            } else {
+                tree.promote(node);
+            }
         }
-        int status = currentNode.getState().checkStatus();
-//        int result = evaluatePlayoutResult(status);
-        backPropagation(currentNode, status);
     }
 
     /**
-     * Backpropagates the result of the simulation up the tree, updating the statistics of the nodes.
+     * Keeps searching the tree retained after our last move while the opponent thinks, and returns immediately.
+     * The search runs from the opponent's point of view at the root, so UCT spends the time mostly on the replies
+     * that are best for the opponent, i.e. the ones most likely to be played. The next call to applyMove, findNextMove
+     * or stopPondering stops it, and the subtree of the actual reply is then reused by findNextMove as usual.
+     */
+    public void startPondering() {
+        if (pondering || trees == null) {
+            return;
+        }
+        SearchTree retained = null;
+        for (SearchTree tree : trees) {
+            if (tree.hasRoot()) {
+                retained = tree;
+            }
+        }
+        if (retained == null || retained.getRootState().checkStatus() != Board.IN_PROGRESS) {
+            return;
+        }
+        // A tree that never explored our move starts over from the position after it.
+        for (SearchTree tree : trees) {
+            if (!tree.hasRoot()) {
+                tree.reset(retained.getRootState(), retained.getRootPlayer(), twoStageSearch);
+            }
+        }
+        if (rootParallel && (workerTables == null || workerTables.length != threads)) {
+            return; // Only ponder with the worker tables of a previous search
+        }
+        if (scheduler == null) {
+            scheduler = new SearchScheduler(threads);
+        }
+        end = System.currentTimeMillis() + PONDER_TIME_LIMIT;
+        iterations.set(0);
+        this.searchIterationLimit = Long.MAX_VALUE;
+        pondering = true;
+        pruneBarrier = newPruneBarrier();
+        scheduler.start(searchWorker);
+    }
+
+    /**
+     * Stops pondering, if it is running, and waits for the workers to leave the tree. Every worker checks the deadline
+     * before each iteration, and an iteration takes well under a millisecond.
+     */
+    public void stopPondering() {
+        if (!pondering) {
+            return;
+        }
+        end = 0;
+        scheduler.await();
+        pondering = false;
+        LOG.info("Pondered " + iterations.get() + " iterations");
+    }
+
+    /**
+     * Finds the node a played move leads to from the root: a child holding the complete move, or in two-stage mode the
+     * arrow child of the matching queen step.
      *
-     * @param node The node from which to start backpropagation.
-     * @param status The result of the playout to be backpropagated.
+     * @param tree The search tree.
+     * @param move The encoded move.
+     * @return The node after the move, or SearchTree.NONE if the tree never explored it.
      */
-    public void backPropagation(Node node, int status) {
-        //System.out.println("activate back propagation");
-        final int finalDepth = 0;
-        while (node != null && node.getNodeDepth() != finalDepth) {
-            node.incrementVisit();
-            // Only add score if the playout result corresponds to the node's player winning
-            if (status == Board.getCurrentPlayer()) {
-                //System.out.println("node before add score " + node.getScore());
-                node.addScore(WIN_SCORE);
-                //System.out.println("Debug: Node WINSCORE");
-            } else if (status == (3 - (Board.getCurrentPlayer()))) {
-                //System.out.println("node before minus score " + node.getScore());
-                node.addScore(-WIN_SCORE);
-            } else if (status == 0) {
-                node.addScore(-WIN_SCORE);
+    private static int followMove(SearchTree tree, int move) {
+        int child = tree.findChild(SearchTree.ROOT, move);
+        if (child == SearchTree.NONE) {
+            int queenStep = tree.findChild(SearchTree.ROOT, Move.encodeQueenStep(Move.from(move), Move.to(move)));
+            child = queenStep != SearchTree.NONE ? tree.findChild(queenStep, move) : SearchTree.NONE;
+        }
+        return child;
+    }
+
+    /**
+     * The loop run by every search thread. Each worker keeps iterating on its own until the deadline, so no thread
+     * waits for another's playout.
+     *
+     * @param index The worker's index.
+     */
+    private void searchWorker(int index) {
+        if (rootParallel) {
+            SearchTree tree = trees[index];
+            TranspositionTable table = workerTables[index];
+            long quota = (searchIterationLimit - 1) / threads + 1; // Counted locally so the workers share nothing
+            long done = 0;
+            while (done < quota && System.currentTimeMillis() < end) {
+                if (tree.isFull()) {
+                    pruneTree(tree); // Nobody else uses this tree
+                }
+                runIteration(tree, table);
+                done++;
+            }
+            iterations.addAndGet(done);
+        } else {
+            SearchTree tree = trees[0];
+            try {
+                while (System.currentTimeMillis() < end && iterations.getAndIncrement() < searchIterationLimit) {
+                    if (tree.isFull()) {
+                        pruneBarrier.arriveAndAwaitAdvance(); // The last worker to arrive prunes
+                    }
+                    runIteration(tree, transpositionTable);
+                }
+            } finally {
+                pruneBarrier.arriveAndDeregister(); // Never keep the others waiting at a prune
             }
-            node = node.getParent();
         }
     }
 
     /**
-     * Expands the given node by creating new child nodes that represent all possible future game states
-     * arising from the current state. This method leverages parallel processing to concurrently evaluate
-     * different potential game states and associated moves, enhancing the computational efficiency.
-     * The expansion considers all possible movements for each queen followed by all potential arrow shots
-     * for those moves, encapsulating the breadth of possible game progressions from the current state.
+     * Creates the barrier at which the workers of a shared-tree search meet to prune the tree. Once the tree reports
+     * that it is full, every worker arrives between two iterations, and the last one to arrive (or to leave the
+     * search) prunes the tree before any of them continues. No worker is inside an iteration while that happens.
      *
-     * Note: The method synchronizes access to the node's children to safely add new child nodes in a
-     * multithreaded environment, preventing concurrent modification issues.
+     * @return A barrier for one search on the scheduler's threads.
+     */
+    private Phaser newPruneBarrier() {
+        return new Phaser(scheduler.threads()) {
+            @Override
+            protected boolean onAdvance(int phase, int registeredParties) {
+                if (registeredParties > 0) {
+                    pruneTree(trees[0]);
+                }
+                return registeredParties == 0;
+            }
+        };
+    }
+
+    // Collapses the least visited subtrees of a full tree, so the search can keep expanding the promising ones.
+    private void pruneTree(SearchTree tree) {
+        if (tree.isFull()) {
+            prunedNodes.add(tree.prune(PRUNE_FRACTION));
+        }
+    }
+
+    /**
+     * Sums the visits and scores of the children of one node per tree by move. With a single tree this is just the
+     * node's children; with root-parallel trees each tree contributes its own child for a move.
+     *
+     * @param trees The trees.
+     * @param nodes The node to read in each tree, or SearchTree.NONE to skip a tree.
+     * @return For every move, its total visits and total score.
+     */
+    static Map<Integer, long[]> mergeChildren(SearchTree[] trees, int[] nodes) {
+        Map<Integer, long[]> byMove = new LinkedHashMap<>();
+        for (int i = 0; i < trees.length; i++) {
+            SearchTree tree = trees[i];
+            if (nodes[i] == SearchTree.NONE || !tree.hasRoot()) {
+                continue;
+            }
+            synchronized (tree) { // A prune moves the nodes; the supervisor reads them during the search
+                for (int child = tree.getFirstChild(nodes[i]); child != SearchTree.NONE;
+                        child = tree.getNextSibling(child)) {
+                    long[] stats = byMove.computeIfAbsent(tree.getMove(child), move -> new long[2]);
+                    stats[0] += tree.getVisits(child);
+                    stats[1] += tree.getScore(child);
+                }
+            }
+        }
+        return byMove;
+    }
+
+    /**
+     * Picks the move with the most visits in total.
+     *
+     * @param byMove Statistics by move, as returned by mergeChildren.
+     * @return The chosen move, or Move.NONE if there are no moves.
+     */
+    static int mostVisitedMove(Map<Integer, long[]> byMove) {
+        int best = Move.NONE;
+        long bestVisits = -1;
+        for (Map.Entry<Integer, long[]> entry : byMove.entrySet()) {
+            if (entry.getValue()[0] > bestVisits) {
+                bestVisits = entry.getValue()[0];
+                best = entry.getKey();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Runs one selection, expansion, simulation and backpropagation pass from the root.
+     * The moves on the way down are replayed on the thread's scratch board, since the tree stores no positions.
+     * Every node on the path takes a virtual loss when the thread enters it, both in the tree and in the transposition
+     * table, so UCT sees in-flight simulations whichever statistics it reads; backPropagation replaces it with the real result.
+     *
+     * @param tree The search tree.
+     * @param table The transposition table of the tree.
+     */
+    private void runIteration(SearchTree tree, TranspositionTable table) {
+        IterationContext context = CONTEXTS.get();
+        Board board = context.board;
+        board.copyFrom(tree.getRootState());
+        int playerToMove = tree.getRootPlayer();
+        int node = SearchTree.ROOT;
+        int depth = 0;
+        context.path[depth] = node;
+        context.movers[depth++] = 3 - playerToMove; // The root was reached by the opponent's last move
+        tree.update(node, 1, VIRTUAL_LOSS);
+        table.update(tree.getKey(node), 1, VIRTUAL_LOSS);
+        while (true) {
+            boolean awaitingArrow = tree.isAwaitingArrow(node);
+            // A queen step always has at least one arrow (the square it left), so only complete positions can be terminal.
+            if (!awaitingArrow) {
+                int status = board.checkStatus();
+                if (status != Board.IN_PROGRESS) {
+                    // With neither side able to move the player to move loses, so the last move on the path won.
+                    int winner = status == Board.DRAW ? context.movers[depth - 1] : status;
+                    backPropagation(tree, table, context, depth, winner);
+                    return;
+                }
+            }
+            // Expansion: a leaf has its moves counted once it has been visited often enough. A leaf that is too new to
+            // be expanded is simulated from.
+            if (!tree.isExpanded(node)) {
+                if (node != SearchTree.ROOT && tree.getVisits(node) < EXPANSION_VISITS) {
+                    break;
+                }
+                tree.expand(node, board, playerToMove, context.moves);
+            }
+            // Reveal a new child if progressive widening allows one (and the tree has room), otherwise descend with UCT.
+            int child = tree.activate(node, Node.widenedChildLimit(tree.getVisits(node)), board, playerToMove,
+                    context.moves);
+            boolean revealed = child != SearchTree.NONE;
+            if (!revealed) {
+                child = UCT.findBestChildWithUCT(tree, node, table);
+                if (child == SearchTree.NONE) {
+                    break;
+                }
+            }
+            int move = tree.getMove(child);
+            if (awaitingArrow) {
+                board.placeArrow(Move.arrow(move));
+            } else if (!Move.hasArrow(move)) {
+                board.moveQueen(Move.from(move), Move.to(move));
+            } else {
+                board.makeMove(move);
+            }
+            tree.update(child, 1, VIRTUAL_LOSS);
+            table.update(tree.getKey(child), 1, VIRTUAL_LOSS);
+            context.path[depth] = child;
+            context.movers[depth++] = playerToMove;
+            node = child;
+            if (!tree.isAwaitingArrow(child)) {
+                playerToMove = 3 - playerToMove; // The move is complete, so the turn passes
+            } else {
+                continue; // A queen step is never simulated from while its arrow can be chosen in the tree
+            }
+            if (revealed) {
+                break; // A new complete position: simulate from here
+            }
+        }
+        int winner = simulateRandomPlayout(tree, node, board, playerToMove);
+        backPropagation(tree, table, context, depth, winner);
+    }
+
+    /**
+     * Plays a random game from a leaf on the iteration's scratch board. Nothing is added to the tree and nothing is
+     * allocated: only the nodes on the path receive the result. After playoutCutoff random moves the game is scored
+     * by territory. A playout is never stopped by the deadline, so a stopped search backpropagates no unfinished ones.
      *
-     * @param node The node to be expanded, representing the current game state.
-     * @param playerNo The player number (1 or 2) for whom the expansion is being done.
+     * @param tree The search tree.
+     * @param leaf The node the simulation starts from.
+     * @param board The leaf's position; played on.
+     * @param playerNo The player to move at the leaf.
+     * @return The winner, Board.P1 or Board.P2.
      */
+    private int simulateRandomPlayout(SearchTree tree, int leaf, Board board, int playerNo) {
+        PlayoutEngine engine = PlayoutEngine.get(); // Per-thread scratch buffers and random generator
+        if (tree.isAwaitingArrow(leaf)) {
+            // Simulating from a queen step: finish its move with a random arrow first.
+            engine.randomArrow(board, Move.to(tree.getMove(leaf)));
+            playerNo = 3 - playerNo;
+        }
+        gamesPlayed.increment();
+        return engine.playoutInPlace(board, playerNo, playoutCutoff);
+    }
+
+    /**
+     * Backpropagates the result of the simulation along the iteration's path, updating the statistics of the nodes.
+     * The visit of every node on the path was already counted with its virtual loss, so only the score changes here.
+     *
+     * @param tree The search tree.
+     * @param table The transposition table of the tree.
+     * @param context The iteration's path.
+     * @param depth The number of nodes on the path.
+     * @param winner The winner of the simulation, Board.P1 or Board.P2.
+     */
+    private void backPropagation(SearchTree tree, TranspositionTable table, IterationContext context, int depth, int winner) {
+        // The root is included so that its visit count can drive progressive widening.
+        for (int i = depth - 1; i >= 0; i--) {
+            // Score from the perspective of the player who moved into the node, so UCT maximizes for whoever chooses at each level
+            int scoreToAdd = winner == context.movers[i] ? WIN_SCORE : -WIN_SCORE;
+            tree.update(context.path[i], 0, scoreToAdd - VIRTUAL_LOSS); // Take back the virtual loss and add the real result
+            // Mirror the update into the transposition table so transposed nodes see these simulations too.
+            table.update(tree.getKey(context.path[i]), 0, scoreToAdd - VIRTUAL_LOSS);
+        }
+    }
 
-    private void expandNode(Node node, int playerNo) {
-        // Use the states generated by getAllPossibleStates, which include both queen moves and arrow shots.
-        node.getState().getAllPossibleStates(playerNo).forEach(state -> {
-            Node childNode = new Node(playerNo); // The player for the next turn.
-            childNode.setState(state);
-            node.addChild(childNode);
-        });
+    /**
+     * Scratch space owned by one search thread: the board the path's moves are replayed on, the path itself with the
+     * player who moved into each node, and a move buffer for expansions.
+     */
+    private static final class IterationContext {
+        final Board board = new Board();
+        final int[] path = new int[MAX_PATH];
+        final int[] movers = new int[MAX_PATH];
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
     }
-}
\ No newline at end of file
+}
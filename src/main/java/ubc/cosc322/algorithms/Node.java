@@ -25,6 +25,9 @@ public class Node {
     public static final double DRAW_SCORE_VALUE = 5.0;
     private AtomicInteger visitCount = new AtomicInteger(0);
     private AtomicInteger score = new AtomicInteger(0);
+    // Progressive widening: a node with n visits may have at most max(1, WIDENING_CONSTANT * n^WIDENING_EXPONENT) children.
+    static final double WIDENING_CONSTANT = 2.0;
+    static final double WIDENING_EXPONENT = 0.5;
 
     /**
      * Constructs a Node instance for the specified player.
@@ -83,6 +86,16 @@ public class Node {
         child.parent = this;
         child.nodeDepth = this.nodeDepth + 1;
     }
+    /**
+     * Computes how many children a node with the given visit count may have under progressive widening.
+     *
+     * @param visits The node's visit count.
+     * @return The maximum number of live children.
+     */
+    static int widenedChildLimit(int visits) {
+        return Math.max(1, (int) Math.ceil(WIDENING_CONSTANT * Math.pow(visits, WIDENING_EXPONENT)));
+    }
+
     /**
      * Retrieves the game state associated with this node.
      *
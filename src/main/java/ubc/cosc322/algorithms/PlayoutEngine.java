@@ -0,0 +1,241 @@
+package ubc.cosc322.algorithms;
+
+import java.util.SplittableRandom;
+
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.Move;
+import ubc.cosc322.core.MoveGenerator;
+
+/**
+ * Plays random games for the Monte Carlo Tree Search without allocating on the heap per ply.
+ * Each thread owns one engine (see get()), holding a scratch board, primitive move buffers and its own SplittableRandom,
+ * so playouts running on different threads never share state.
+ */
+public class PlayoutEngine {
+    private static final ThreadLocal<PlayoutEngine> ENGINES = ThreadLocal.withInitial(PlayoutEngine::new);
+    // Boards with more empty squares than this are practically never partitioned, so playouts do not look for it there.
+    static final int PARTITION_EMPTY_SQUARES = 50;
+
+    private final Board scratch = new Board(); // Reset from the starting position at the beginning of every playout
+    private final int[] queens = new int[MoveGenerator.QUEENS_PER_PLAYER];
+    private final int[] targets = new int[MoveGenerator.MAX_MOVES_PER_SQUARE];
+    private final SplittableRandom random = new SplittableRandom();
+    private final TerritoryEvaluator evaluator = new TerritoryEvaluator();
+    private final BFSAmazons regions = new BFSAmazons();
+    private final RegionSolver solver = new RegionSolver(RegionDatabase.getDefault());
+    // The regions of the group movesLeft() is counting, and the queens each of them is given while assigning them.
+    private final int[] groupRegions = new int[Board.DEFAULT_BOARD_SIZE * Board.DEFAULT_BOARD_SIZE];
+    private final int[] assignedQueens = new int[Board.DEFAULT_BOARD_SIZE * Board.DEFAULT_BOARD_SIZE];
+    private final int[] oneRegion = new int[1];
+
+    /**
+     * Retrieves the playout engine owned by the calling thread, creating it on first use.
+     *
+     * @return The calling thread's engine.
+     */
+    public static PlayoutEngine get() {
+        return ENGINES.get();
+    }
+
+    /**
+     * Plays random moves from the given position until one side cannot move.
+     * The loop is the same as the original randomPlay + checkStatus loop: the status is checked before every ply
+     * and the players alternate. A position where neither side can move (Board.DRAW for checkStatus()) is lost by the
+     * player to move, so the result is always a winner.
+     * The starting board is not modified; the game is played on this engine's scratch board.
+     *
+     * @param start The position to play out from.
+     * @param playerNo The player to move first.
+     * @return The winner, Board.P1 or Board.P2.
+     */
+    public int playout(Board start, int playerNo) {
+        scratch.copyFrom(start);
+        return playoutInPlace(scratch, playerNo);
+    }
+
+    /**
+     * Plays random moves on the given board itself until one side cannot move. The search uses this on the scratch
+     * board it replayed the tree path on, so a simulation neither copies the position again nor touches the tree.
+     *
+     * @param board The position to play out from; left at the final position.
+     * @param playerNo The player to move first.
+     * @return The winner, Board.P1 or Board.P2.
+     */
+    public int playoutInPlace(Board board, int playerNo) {
+        return playoutInPlace(board, playerNo, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Plays at most the given number of random moves on the board itself. If the game has not ended by then, the
+     * winner is predicted from the territory each side controls (see TerritoryEvaluator), which is both cheaper and
+     * less noisy than playing the remaining moves at random.
+     * The playout also stops as soon as the board is partitioned, i.e. no region is shared by queens of both players:
+     * from then on each side can only fill its own regions, so the result follows from counting them. The check runs
+     * before every ply once at most PARTITION_EMPTY_SQUARES squares are empty.
+     *
+     * @param board The position to play out from; left at the final position.
+     * @param playerNo The player to move first.
+     * @param maxPlies The number of random moves after which the position is evaluated instead.
+     * @return The actual or predicted winner, Board.P1 or Board.P2.
+     */
+    public int playoutInPlace(Board board, int playerNo, int maxPlies) {
+        int status;
+        for (int ply = 0; (status = board.checkStatus()) == Board.IN_PROGRESS; ply++) {
+            if (board.countEmptySquares() <= PARTITION_EMPTY_SQUARES && regions.isPartitioned(board)) {
+                regions.analyze(board);
+                return partitionedWinner(board, playerNo);
+            }
+            if (ply >= maxPlies) {
+                return evaluator.predictWinner(board, playerNo);
+            }
+            randomPly(board, playerNo);
+            playerNo = 3 - playerNo; // Toggle players
+        }
+        // Neither side can move: the player to move is the one who is stuck, so whoever moved last wins.
+        return status == Board.DRAW ? 3 - playerNo : status;
+    }
+
+    /**
+     * Decides a partitioned position from the last region analysis. Each side makes its moves in its own regions; the
+     * player to move wins only with strictly more moves left, because on equal counts it is the first to run out.
+     *
+     * @param board The position.
+     * @param playerNo The player to move.
+     * @return The winner, Board.P1 or Board.P2.
+     */
+    private int partitionedWinner(Board board, int playerNo) {
+        return movesLeft(board, playerNo) > movesLeft(board, 3 - playerNo) ? playerNo : 3 - playerNo;
+    }
+
+    /**
+     * Counts the moves a player can still make in a partitioned position. Regions that share a queen are counted
+     * together, since the queen can use either of them but its moves in one are lost to the other. Such a group is
+     * solved exactly when it is small (see RegionSolver); otherwise each queen is given to one of its regions in the way
+     * that leaves the most moves, counting small regions exactly and larger ones by their number of squares, which
+     * their queens can usually fill.
+     *
+     * @param board The position.
+     * @param playerNo The player.
+     * @return The number of moves.
+     */
+    private int movesLeft(Board board, int playerNo) {
+        int shift = playerNo == Board.P1 ? 0 : MoveGenerator.QUEENS_PER_PLAYER;
+        int remaining = 0;
+        for (int region = 0; region < regions.getRegionCount(); region++) {
+            remaining |= queensOf(region, shift);
+        }
+        int moves = 0;
+        while (remaining != 0) {
+            // Grow a group from one queen through the regions it shares with the other queens.
+            int group = Integer.lowestOneBit(remaining);
+            for (boolean grown = true; grown; ) {
+                grown = false;
+                for (int region = 0; region < regions.getRegionCount(); region++) {
+                    int touching = queensOf(region, shift);
+                    if ((touching & group) != 0 && (touching & ~group) != 0) {
+                        group |= touching;
+                        grown = true;
+                    }
+                }
+            }
+            remaining &= ~group;
+            int groupSize = 0;
+            int squares = 0;
+            for (int region = 0; region < regions.getRegionCount(); region++) {
+                if ((queensOf(region, shift) & group) != 0) {
+                    groupRegions[groupSize++] = region;
+                    squares += regions.getRegionSize(region);
+                }
+            }
+            moves += squares <= RegionSolver.MAX_SQUARES
+                    ? solver.solve(board, regions, groupRegions, groupSize, group, playerNo)
+                    : assignQueens(board, playerNo, groupSize, group, shift);
+        }
+        return moves;
+    }
+
+    private int queensOf(int region, int shift) {
+        return regions.getRegionQueens(region) >>> shift & (1 << MoveGenerator.QUEENS_PER_PLAYER) - 1;
+    }
+
+    /**
+     * Gives each of the queens left to the regions of the current group they touch, one region per queen, and returns
+     * the most moves any choice leaves.
+     *
+     * @param board The position.
+     * @param playerNo The player.
+     * @param groupSize The number of regions in groupRegions.
+     * @param queens The queens that still need a region.
+     * @param shift The offset of the player's queens in BFSAmazons.getRegionQueens().
+     * @return The number of moves.
+     */
+    private int assignQueens(Board board, int playerNo, int groupSize, int queens, int shift) {
+        if (queens == 0) {
+            int moves = 0;
+            for (int i = 0; i < groupSize; i++) {
+                int size = regions.getRegionSize(groupRegions[i]);
+                if (assignedQueens[i] == 0) {
+                    continue; // No queen can get in
+                }
+                if (size > RegionSolver.MAX_SQUARES) {
+                    moves += size;
+                } else {
+                    oneRegion[0] = groupRegions[i];
+                    moves += solver.solve(board, regions, oneRegion, 1, assignedQueens[i], playerNo);
+                }
+            }
+            return moves;
+        }
+        int queen = Integer.lowestOneBit(queens);
+        int best = 0;
+        for (int i = 0; i < groupSize; i++) {
+            if ((queensOf(groupRegions[i], shift) & queen) != 0) {
+                assignedQueens[i] |= queen;
+                best = Math.max(best, assignQueens(board, playerNo, groupSize, queens & ~queen, shift));
+                assignedQueens[i] &= ~queen;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Plays one random move on the board in place: a random queen that can move, a random destination for it,
+     * and a random arrow shot from the destination. Only queens with at least one free neighbour are considered,
+     * so a ply is never wasted on a trapped queen.
+     *
+     * @param board The board to play on.
+     * @param playerNo The player to move.
+     * @return The encoded move that was played (see Move), or Move.NONE if the player has no legal move.
+     */
+    public int randomPly(Board board, int playerNo) {
+        int queenCount = board.getQueenSquares(playerNo, queens);
+        // Keep only the queens that can move, compacting them to the front of the buffer.
+        int mobile = 0;
+        for (int i = 0; i < queenCount; i++) {
+            if (MoveGenerator.hasMove(board, queens[i])) {
+                queens[mobile++] = queens[i];
+            }
+        }
+        if (mobile == 0) {
+            return Move.NONE;
+        }
+        int from = queens[random.nextInt(mobile)];
+        int to = targets[random.nextInt(MoveGenerator.generate(board, from, targets, 0))];
+        board.moveQueen(from, to);
+        return Move.encode(from, to, randomArrow(board, to));
+    }
+
+    /**
+     * Shoots a random arrow from a queen that has just moved, completing its move on the board.
+     *
+     * @param board The board to play on.
+     * @param queen The square of the queen that moved.
+     * @return The square the arrow landed on.
+     */
+    public int randomArrow(Board board, int queen) {
+        // The vacated square is always reachable from the destination, so there is at least one arrow shot.
+        int arrow = targets[random.nextInt(MoveGenerator.generate(board, queen, targets, 0))];
+        board.placeArrow(arrow);
+        return arrow;
+    }
+}
@@ -0,0 +1,383 @@
+package ubc.cosc322.algorithms;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ubc.cosc322.core.Board;
+
+/**
+ * Precomputed move counts of small regions with a single queen, read from a memory-mapped file.
+ *
+ * How many moves a queen can make in a region nobody else can enter depends only on the shape of the region and where
+ * the queen stands next to it, not on where that shape lies on the board or which way it is turned. generate()
+ * enumerates every such shape up to a size once, offline, solves it with RegionSolver and writes the results to a file;
+ * at run time lookup() answers the same question for a region of a game in constant time instead of searching.
+ *
+ * A shape is identified by its canonical key: the smallest hash over its eight rotations and reflections, each moved to
+ * the corner of the board. The file is an open-addressing hash table of 64-bit entries, each holding the top 56 bits
+ * of a key and the move count in the low byte, so two different shapes could in principle share an entry; with 56 bits
+ * and a few hundred thousand shapes that never happens in practice. The table is mapped read-only and never copied
+ * onto the heap, and since lookups only read it, one database is shared by every thread.
+ *
+ * File layout, big-endian: the int MAGIC, the int VERSION, the largest region size in the table, the base-2 logarithm of
+ * the number of slots, then the slots as longs, 0 for an empty slot.
+ */
+public class RegionDatabase {
+    private static final Logger LOG = Logger.getLogger(RegionDatabase.class.getName());
+    /**
+     * The file the engine loads the database from, in the working directory.
+     */
+    public static final String DEFAULT_FILE = "regions.db";
+    /**
+     * The result of lookup() for a region that is not in the database.
+     */
+    public static final int NOT_FOUND = -1;
+    /**
+     * The largest region generate() accepts: together with its queen it still fits on the board in any orientation.
+     */
+    public static final int MAX_SQUARES = Board.DEFAULT_BOARD_SIZE - 1;
+    static final int MAGIC = 0x414D5A52; // "AMZR"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int MAX_SLOT_BITS = 27; // Keeps every offset in the table an int
+    private static final long VALUE_MASK = 0xFF;
+    private static final long TAG = 0x100; // Set in every stored key, so no entry is 0
+    private static final int SYMMETRIES = 8;
+    private static final int[] DIRECTIONS_X = {0, 1, 0, -1, 1, 1, -1, -1};
+    private static final int[] DIRECTIONS_Y = {1, 0, -1, 0, 1, -1, -1, 1};
+    private static final int SQUARES = Board.DEFAULT_BOARD_SIZE * Board.DEFAULT_BOARD_SIZE;
+    // The coordinates of every square after each of the eight symmetries, indexed by symmetry * SQUARES + square:
+    // bit 0 of the symmetry swaps x and y, bits 1 and 2 mirror them.
+    private static final int[] IMAGE_X = new int[SYMMETRIES * SQUARES];
+    private static final int[] IMAGE_Y = new int[SYMMETRIES * SQUARES];
+    static final RegionDatabase EMPTY = new RegionDatabase(null, 0, 0);
+
+    static {
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            for (int square = 0; square < SQUARES; square++) {
+                int x = square / Board.DEFAULT_BOARD_SIZE;
+                int y = square % Board.DEFAULT_BOARD_SIZE;
+                if ((symmetry & 1) != 0) {
+                    int swap = x;
+                    x = y;
+                    y = swap;
+                }
+                IMAGE_X[symmetry * SQUARES + square] = (symmetry & 2) == 0 ? x : -x;
+                IMAGE_Y[symmetry * SQUARES + square] = (symmetry & 4) == 0 ? y : -y;
+            }
+        }
+    }
+
+    private final MappedByteBuffer table;
+    private final int maxSquares;
+    private final int slotBits;
+
+    private RegionDatabase(MappedByteBuffer table, int maxSquares, int slotBits) {
+        this.table = table;
+        this.maxSquares = maxSquares;
+        this.slotBits = slotBits;
+    }
+
+    /**
+     * Retrieves the database in DEFAULT_FILE, mapping it on first use. Without the file (or with an unreadable one)
+     * this is an empty database and the engine solves every region itself.
+     *
+     * @return The shared database.
+     */
+    public static RegionDatabase getDefault() {
+        return Holder.DEFAULT;
+    }
+
+    private static class Holder {
+        static final RegionDatabase DEFAULT = loadDefault();
+
+        private static RegionDatabase loadDefault() {
+            Path file = Paths.get(DEFAULT_FILE);
+            if (!Files.isRegularFile(file)) {
+                return EMPTY;
+            }
+            try {
+                return load(file);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not load region database " + file, e);
+                return EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Maps a database file written by generate().
+     *
+     * @param file The file.
+     * @return The database.
+     * @throws IOException if the file cannot be read or is not a region database.
+     */
+    public static RegionDatabase load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a region database: " + file);
+            }
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int maxSquares = table.getInt(8);
+            int slotBits = table.getInt(12);
+            if (table.getInt(0) != MAGIC || table.getInt(4) != VERSION || maxSquares < 0 || maxSquares > MAX_SQUARES
+                    || slotBits < 1 || slotBits > MAX_SLOT_BITS
+                    || channel.size() != HEADER_BYTES + ((long) Long.BYTES << slotBits)) {
+                throw new IOException("Not a region database: " + file);
+            }
+            return new RegionDatabase(table, maxSquares, slotBits);
+        } // The mapping stays valid after the channel is closed
+    }
+
+    /**
+     * @return The largest region size in the database; 0 for an empty database.
+     */
+    public int getMaxSquares() {
+        return maxSquares;
+    }
+
+    /**
+     * Looks up how many moves a single queen can make in a region.
+     *
+     * @param regionLo The region's squares 0-63, one bit per square.
+     * @param regionHi The region's squares 64-99.
+     * @param queenSquare The square of the queen, next to the region.
+     * @return The most moves the queen can make in the region, or NOT_FOUND if the region is too large for the database.
+     */
+    public int lookup(long regionLo, long regionHi, int queenSquare) {
+        if (Long.bitCount(regionLo) + Long.bitCount(regionHi) > maxSquares) {
+            return NOT_FOUND;
+        }
+        long key = canonicalKey(regionLo, regionHi, queenSquare);
+        int mask = (1 << slotBits) - 1;
+        for (int slot = slot(key, slotBits); ; slot = (slot + 1) & mask) {
+            long entry = table.getLong(HEADER_BYTES + slot * Long.BYTES);
+            if (entry == 0) {
+                return NOT_FOUND;
+            }
+            if ((entry & ~VALUE_MASK) == key) {
+                return (int) (entry & VALUE_MASK);
+            }
+        }
+    }
+
+    /**
+     * Computes the key a region and its queen are stored under, which is the same for every translation, rotation and
+     * reflection of them.
+     *
+     * @param regionLo The region's squares 0-63, one bit per square.
+     * @param regionHi The region's squares 64-99.
+     * @param queenSquare The square of the queen, or -1 for the shape of the region alone.
+     * @return The key, with the low byte clear and TAG set.
+     */
+    static long canonicalKey(long regionLo, long regionHi, int queenSquare) {
+        long best = Long.MAX_VALUE;
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            // First find where the image starts, then draw it moved to the corner.
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            for (int word = 0; word < 2; word++) {
+                for (long bits = word == 0 ? regionLo : regionHi; bits != 0; bits &= bits - 1) {
+                    int square = word * 64 + Long.numberOfTrailingZeros(bits);
+                    minX = Math.min(minX, imageX(square, symmetry));
+                    minY = Math.min(minY, imageY(square, symmetry));
+                }
+            }
+            if (queenSquare >= 0) {
+                minX = Math.min(minX, imageX(queenSquare, symmetry));
+                minY = Math.min(minY, imageY(queenSquare, symmetry));
+            }
+            long imageLo = 0;
+            long imageHi = 0;
+            for (int word = 0; word < 2; word++) {
+                for (long bits = word == 0 ? regionLo : regionHi; bits != 0; bits &= bits - 1) {
+                    int square = word * 64 + Long.numberOfTrailingZeros(bits);
+                    int image = Board.square(imageX(square, symmetry) - minX, imageY(square, symmetry) - minY);
+                    if (image < 64) imageLo |= 1L << image;
+                    else imageHi |= 1L << (image - 64);
+                }
+            }
+            int queenImage = queenSquare < 0 ? -1
+                    : Board.square(imageX(queenSquare, symmetry) - minX, imageY(queenSquare, symmetry) - minY);
+            long hash = mix(imageLo ^ mix(imageHi ^ ((long) (queenImage + 1) << 40)));
+            best = Math.min(best, hash);
+        }
+        return (best & ~VALUE_MASK) | TAG;
+    }
+
+    private static int imageX(int square, int symmetry) {
+        return IMAGE_X[symmetry * SQUARES + square];
+    }
+
+    private static int imageY(int square, int symmetry) {
+        return IMAGE_Y[symmetry * SQUARES + square];
+    }
+
+    // A key is the smallest of eight hashes, so its top bits lean low; it is mixed again to spread the slots evenly.
+    private static int slot(long key, int slotBits) {
+        return (int) (mix(key) >>> (Long.SIZE - slotBits));
+    }
+
+    // The SplitMix64 finalizer.
+    private static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+
+    /**
+     * Enumerates every region of up to maxSquares squares with a single queen next to it, solves each one and writes
+     * the database. Regions are grown one square at a time from the shapes one square smaller and deduplicated by
+     * canonical key, so each shape is solved once whatever its orientation.
+     *
+     * @param maxSquares The largest region size, at most MAX_SQUARES.
+     * @param file The file to write.
+     * @return The number of entries written.
+     * @throws IOException if the file cannot be written.
+     */
+    public static int generate(int maxSquares, Path file) throws IOException {
+        if (maxSquares < 1 || maxSquares > MAX_SQUARES) {
+            throw new IllegalArgumentException("Region size must be between 1 and " + MAX_SQUARES + ": " + maxSquares);
+        }
+        RegionSolver solver = new RegionSolver();
+        Map<Long, Integer> entries = new HashMap<>();
+        List<int[]> shapes = new ArrayList<>();
+        shapes.add(new int[] {0});
+        for (int size = 1; size <= maxSquares; size++) {
+            for (int[] shape : shapes) {
+                addQueens(shape, solver, entries);
+            }
+            if (size < maxSquares) {
+                shapes = grow(shapes);
+            }
+        }
+        int slotBits = 1;
+        while ((1L << slotBits) < 2L * entries.size()) {
+            slotBits++; // At most half full, so probes stay short
+        }
+        if (slotBits > MAX_SLOT_BITS) {
+            throw new IllegalArgumentException("Too many regions for one database: " + entries.size());
+        }
+        long[] slots = new long[1 << slotBits];
+        for (Map.Entry<Long, Integer> entry : entries.entrySet()) {
+            int slot = slot(entry.getKey(), slotBits);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = entry.getKey() | entry.getValue();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(maxSquares);
+            out.writeInt(slotBits);
+            for (long slot : slots) {
+                out.writeLong(slot);
+            }
+        }
+        return entries.size();
+    }
+
+    // The shapes one square larger than the given ones, each once, as board squares moved to the corner.
+    private static List<int[]> grow(List<int[]> shapes) {
+        List<int[]> grown = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (int[] shape : shapes) {
+            for (int square : shape) {
+                for (int d = 0; d < DIRECTIONS_X.length; d++) {
+                    int[] cells = place(shape, square, d);
+                    if (cells == null) {
+                        continue;
+                    }
+                    int[] larger = new int[shape.length + 1];
+                    System.arraycopy(cells, 0, larger, 0, larger.length);
+                    long[] mask = mask(larger, larger.length);
+                    if (seen.add(canonicalKey(mask[0], mask[1], -1))) {
+                        grown.add(larger);
+                    }
+                }
+            }
+        }
+        return grown;
+    }
+
+    // Solves a shape for every square next to it a queen could stand on.
+    private static void addQueens(int[] shape, RegionSolver solver, Map<Long, Integer> entries) {
+        int[] queen = new int[1];
+        for (int square : shape) {
+            for (int d = 0; d < DIRECTIONS_X.length; d++) {
+                int[] cells = place(shape, square, d);
+                if (cells == null) {
+                    continue;
+                }
+                long[] mask = mask(cells, shape.length);
+                queen[0] = cells[shape.length];
+                Long key = canonicalKey(mask[0], mask[1], queen[0]);
+                if (!entries.containsKey(key)) {
+                    entries.put(key, solver.solve(cells, shape.length, queen, 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the square next to one square of a shape in a direction, and moves the result to the corner of the board.
+     *
+     * @return The shape's squares followed by the new one, or null if the new square is already in the shape or the
+     *         result does not fit on the board.
+     */
+    private static int[] place(int[] shape, int square, int direction) {
+        int size = shape.length;
+        int[] xs = new int[size + 1];
+        int[] ys = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            xs[i] = shape[i] / Board.DEFAULT_BOARD_SIZE;
+            ys[i] = shape[i] % Board.DEFAULT_BOARD_SIZE;
+        }
+        xs[size] = square / Board.DEFAULT_BOARD_SIZE + DIRECTIONS_X[direction];
+        ys[size] = square % Board.DEFAULT_BOARD_SIZE + DIRECTIONS_Y[direction];
+        int minX = Math.min(0, xs[size]);
+        int minY = Math.min(0, ys[size]);
+        int[] cells = new int[size + 1];
+        for (int i = 0; i <= size; i++) {
+            int x = xs[i] - minX;
+            int y = ys[i] - minY;
+            if (x >= Board.DEFAULT_BOARD_SIZE || y >= Board.DEFAULT_BOARD_SIZE) {
+                return null;
+            }
+            cells[i] = Board.square(x, y);
+            if (i == size) {
+                for (int j = 0; j < size; j++) {
+                    if (cells[j] == cells[size]) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return cells;
+    }
+
+    private static long[] mask(int[] squares, int count) {
+        long[] mask = new long[2];
+        for (int i = 0; i < count; i++) {
+            if (squares[i] < 64) mask[0] |= 1L << squares[i];
+            else mask[1] |= 1L << (squares[i] - 64);
+        }
+        return mask;
+    }
+}
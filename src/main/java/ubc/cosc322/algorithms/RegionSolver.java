@@ -0,0 +1,313 @@
+package ubc.cosc322.algorithms;
+
+import java.util.Arrays;
+
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.MoveGenerator;
+
+/**
+ * Computes exactly how many moves one player can make inside a small region nobody else can enter.
+ *
+ * Once the board is partitioned (see BFSAmazons) each region belongs to the queens of one player, and the game is won by
+ * whoever can make more moves in their own regions. The region's size is only an upper bound: a queen cannot fill a
+ * region whose squares it cannot all reach before walling itself in, such as a dead-end corridor with the queen in the
+ * middle. This solver finds the true number with a depth-first search over every queen move and arrow shot.
+ *
+ * The squares of the region and its queens get local indices, so a position of the search is a bit mask of the empty
+ * local squares plus the local squares of the queens. Positions are memoized by that key in a direct-mapped table
+ * that is invalidated between solves by a generation stamp, so nothing is cleared or allocated per solve. Every move
+ * fills exactly one square, so no line can beat the number of empty squares, and the search stops as soon as a line
+ * fills them all, which is the common case. Finished solves are also kept in a small direct-mapped cache keyed by the
+ * region's squares and its queens, since the playouts of one search keep reaching the same late-game regions. Regions
+ * with a single queen that miss the cache are looked up in a RegionDatabase, which knows the small ones without
+ * searching at all.
+ *
+ * Regions that share a queen can be solved together (see solve with a group of regions), since the queen may use both.
+ * An instance holds its scratch space and must not be shared between threads; PlayoutEngine owns one per thread.
+ */
+public class RegionSolver {
+    /**
+     * The largest region solved exactly; the search grows exponentially with the size.
+     */
+    public static final int MAX_SQUARES = 12;
+    private static final int MAX_LOCAL = MAX_SQUARES + MoveGenerator.QUEENS_PER_PLAYER;
+    private static final int LOCAL_BITS = 5; // Bits per queen in a memo key; MAX_LOCAL fits
+    private static final int[] DIRECTIONS_X = {0, 1, 0, -1, 1, 1, -1, -1};
+    private static final int[] DIRECTIONS_Y = {1, 0, -1, 0, 1, -1, -1, 1};
+    private static final int MEMO_BITS = 15;
+    private static final int MEMO_MASK = (1 << MEMO_BITS) - 1;
+    private static final int CACHE_BITS = 12;
+    private static final int CACHE_MASK = (1 << CACHE_BITS) - 1;
+    private static final int QUEEN_BITS = 7; // Bits per board square in a cache key
+    private static final int SQUARES = Board.DEFAULT_BOARD_SIZE * Board.DEFAULT_BOARD_SIZE;
+
+    private final int[] localOf = new int[SQUARES]; // Board square to local index, or -1
+    private final int[] squareOf = new int[MAX_LOCAL]; // Local index to board square
+    private final int[] next = new int[MAX_LOCAL * MoveGenerator.DIRECTIONS]; // Neighbour along each direction, or -1
+    private final int[] neighbours = new int[MAX_LOCAL]; // Local king-step neighbours of each local square, as bits
+    private final int[] queens = new int[MoveGenerator.QUEENS_PER_PLAYER]; // Local squares during the search
+    private final int[] boardQueens = new int[MoveGenerator.QUEENS_PER_PLAYER];
+    private final int[] singleRegion = new int[1];
+    private final long[] memoKeys = new long[1 << MEMO_BITS];
+    private final int[] memoValues = new int[1 << MEMO_BITS];
+    private final int[] memoStamps = new int[1 << MEMO_BITS];
+    private int stamp;
+    // Results of earlier solves: the region's squares as the two mask words, its queens' squares, and the result + 1
+    // (so that 0 marks an empty entry).
+    private final long[] cacheLo = new long[1 << CACHE_BITS];
+    private final long[] cacheHi = new long[1 << CACHE_BITS];
+    private final int[] cacheQueens = new int[1 << CACHE_BITS];
+    private final int[] cacheValues = new int[1 << CACHE_BITS];
+    private int queenCount;
+    private final RegionDatabase database;
+
+    /**
+     * Creates a solver with its own scratch space and memo table that searches every region.
+     */
+    public RegionSolver() {
+        this(RegionDatabase.EMPTY);
+    }
+
+    /**
+     * Creates a solver with its own scratch space and memo table.
+     *
+     * @param database Precomputed results for regions with a single queen, looked up before searching.
+     */
+    public RegionSolver(RegionDatabase database) {
+        this.database = database;
+        Arrays.fill(localOf, -1);
+    }
+
+    /**
+     * Solves a region found by the last analysis of a BFSAmazons for the player whose queens touch it.
+     *
+     * @param board The position the regions were found on.
+     * @param regions The analysis.
+     * @param region A region with at most MAX_SQUARES squares, touched by the player's queens only.
+     * @param playerNo The player who owns the region.
+     * @return The most moves the player can make in the region.
+     */
+    public int solve(Board board, BFSAmazons regions, int region, int playerNo) {
+        singleRegion[0] = region;
+        return solve(board, regions, singleRegion, 1, regions.getRegionQueens(region) >>> queenShift(playerNo), playerNo);
+    }
+
+    /**
+     * Solves several regions found by the last analysis of a BFSAmazons together, for some of a player's queens. A
+     * queen standing next to two regions can reach the second one through the square it leaves, so regions that share
+     * a queen are only solved exactly as one problem.
+     *
+     * @param board The position the regions were found on.
+     * @param regions The analysis.
+     * @param group The regions, with at most MAX_SQUARES squares in total, touched by the player's queens only.
+     * @param groupSize The number of regions in group.
+     * @param queenBits The queens that may move into the regions: bit i for the i-th queen returned by
+     *                  Board.getQueenSquares(playerNo, ...), as in BFSAmazons.getRegionQueens() for Board.P1.
+     * @param playerNo The player who owns the regions.
+     * @return The most moves the queens can make in the regions.
+     */
+    public int solve(Board board, BFSAmazons regions, int[] group, int groupSize, int queenBits, int playerNo) {
+        int count = board.getQueenSquares(playerNo, boardQueens);
+        int touching = 0;
+        for (int i = 0; i < count; i++) {
+            if ((queenBits & (1 << i)) != 0) {
+                boardQueens[touching++] = boardQueens[i];
+            }
+        }
+        int size = 0;
+        for (int g = 0; g < groupSize; g++) {
+            size += regions.getRegionSize(group[g]);
+        }
+        if (size > MAX_SQUARES) {
+            throw new IllegalArgumentException("Regions of " + size + " squares are too large to solve");
+        }
+        long regionLo = 0;
+        long regionHi = 0;
+        size = 0;
+        for (int g = 0; g < groupSize; g++) {
+            for (int i = 0; i < regions.getRegionSize(group[g]); i++) {
+                int square = regions.getRegionSquare(group[g], i);
+                squareOf[size++] = square;
+                if (square < 64) regionLo |= 1L << square;
+                else regionHi |= 1L << square;
+            }
+        }
+        // Queens in getQueenSquares order; the order only has to be the same every time the position comes back.
+        int packedQueens = 0;
+        for (int i = 0; i < touching; i++) {
+            packedQueens |= (boardQueens[i] + 1) << (i * QUEEN_BITS);
+        }
+        int slot = (int) (mix(regionLo ^ mix(regionHi ^ packedQueens)) & CACHE_MASK);
+        if (cacheValues[slot] != 0 && cacheLo[slot] == regionLo && cacheHi[slot] == regionHi
+                && cacheQueens[slot] == packedQueens) {
+            return cacheValues[slot] - 1;
+        }
+        // The database only holds single connected regions.
+        int moves = touching == 1 && groupSize == 1 ? database.lookup(regionLo, regionHi, boardQueens[0])
+                : RegionDatabase.NOT_FOUND;
+        if (moves == RegionDatabase.NOT_FOUND) {
+            moves = solve(size, boardQueens, touching);
+        }
+        cacheLo[slot] = regionLo;
+        cacheHi[slot] = regionHi;
+        cacheQueens[slot] = packedQueens;
+        cacheValues[slot] = moves + 1;
+        return moves;
+    }
+
+    private static int queenShift(int playerNo) {
+        return playerNo == Board.P1 ? 0 : MoveGenerator.QUEENS_PER_PLAYER;
+    }
+
+    /**
+     * Solves a region given by its squares.
+     *
+     * @param squares The board squares of the region.
+     * @param size The number of squares, at most MAX_SQUARES.
+     * @param queenSquares The board squares of the queens that touch the region, all of one player.
+     * @param queenCount The number of queens.
+     * @return The most moves the queens can make in the region.
+     */
+    public int solve(int[] squares, int size, int[] queenSquares, int queenCount) {
+        if (size > MAX_SQUARES) {
+            throw new IllegalArgumentException("Region of " + size + " squares is too large to solve");
+        }
+        System.arraycopy(squares, 0, squareOf, 0, size);
+        return solve(size, queenSquares, queenCount);
+    }
+
+    /**
+     * Solves the region whose squares have been copied into squareOf from index 0.
+     *
+     * @param squares The number of squares in the region.
+     * @param queenSquares The board squares of the queens that touch the region.
+     * @param queenSquareCount The number of queens.
+     * @return The most moves the queens can make in the region.
+     */
+    private int solve(int squares, int[] queenSquares, int queenSquareCount) {
+        if (queenSquareCount == 0) {
+            return 0;
+        }
+        if (squares > MAX_SQUARES) {
+            throw new IllegalArgumentException("Region of " + squares + " squares is too large to solve");
+        }
+        // Local indices: the region's squares first, then the queens' squares, which become empty once they move.
+        int local = squares;
+        for (int i = 0; i < queenSquareCount; i++) {
+            squareOf[local] = queenSquares[i];
+            queens[i] = local++;
+        }
+        queenCount = queenSquareCount;
+        for (int i = 0; i < local; i++) {
+            localOf[squareOf[i]] = i;
+        }
+        for (int i = 0; i < local; i++) {
+            int x = squareOf[i] / Board.DEFAULT_BOARD_SIZE;
+            int y = squareOf[i] % Board.DEFAULT_BOARD_SIZE;
+            for (int d = 0; d < MoveGenerator.DIRECTIONS; d++) {
+                int nx = x + DIRECTIONS_X[d];
+                int ny = y + DIRECTIONS_Y[d];
+                boolean onBoard = nx >= 0 && nx < Board.DEFAULT_BOARD_SIZE && ny >= 0 && ny < Board.DEFAULT_BOARD_SIZE;
+                next[i * MoveGenerator.DIRECTIONS + d] = onBoard ? localOf[Board.square(nx, ny)] : -1;
+            }
+        }
+        for (int i = 0; i < local; i++) {
+            neighbours[i] = 0;
+            for (int d = 0; d < MoveGenerator.DIRECTIONS; d++) {
+                int neighbour = next[i * MoveGenerator.DIRECTIONS + d];
+                if (neighbour >= 0) {
+                    neighbours[i] |= 1 << neighbour;
+                }
+            }
+        }
+        stamp++;
+        int moves = search((1 << squares) - 1);
+        for (int i = 0; i < local; i++) {
+            localOf[squareOf[i]] = -1;
+        }
+        return moves;
+    }
+
+    // The most moves the queens can still make with the given local squares empty.
+    private int search(int empty) {
+        // Squares the queens can no longer walk to will never be filled, so they are dropped from the position. That
+        // tightens the bound and lets positions that differ only in dead squares share a memo entry.
+        empty = reachable(empty);
+        int bound = Integer.bitCount(empty);
+        if (bound == 0) {
+            return 0;
+        }
+        long key = key(empty);
+        int slot = (int) (mix(key) & MEMO_MASK);
+        if (memoStamps[slot] == stamp && memoKeys[slot] == key) {
+            return memoValues[slot];
+        }
+        int best = 0;
+        search:
+        for (int q = 0; q < queenCount; q++) {
+            int from = queens[q];
+            for (int d = 0; d < MoveGenerator.DIRECTIONS; d++) {
+                for (int to = next[from * MoveGenerator.DIRECTIONS + d]; to >= 0 && (empty & (1 << to)) != 0;
+                        to = next[to * MoveGenerator.DIRECTIONS + d]) {
+                    int moved = (empty & ~(1 << to)) | (1 << from);
+                    queens[q] = to;
+                    for (int a = 0; a < MoveGenerator.DIRECTIONS; a++) {
+                        for (int arrow = next[to * MoveGenerator.DIRECTIONS + a]; arrow >= 0 && (moved & (1 << arrow)) != 0;
+                                arrow = next[arrow * MoveGenerator.DIRECTIONS + a]) {
+                            best = Math.max(best, 1 + search(moved & ~(1 << arrow)));
+                            if (best == bound) {
+                                queens[q] = from;
+                                break search; // Every empty square gets filled; nothing can do better
+                            }
+                        }
+                    }
+                    queens[q] = from;
+                }
+            }
+        }
+        memoKeys[slot] = key;
+        memoValues[slot] = best;
+        memoStamps[slot] = stamp;
+        return best;
+    }
+
+    // The empty squares connected to a queen by king steps.
+    private int reachable(int empty) {
+        int frontier = 0;
+        for (int q = 0; q < queenCount; q++) {
+            frontier |= neighbours[queens[q]];
+        }
+        frontier &= empty;
+        int reached = frontier;
+        while (frontier != 0) {
+            int grown = 0;
+            for (int bits = frontier; bits != 0; bits &= bits - 1) {
+                grown |= neighbours[Integer.numberOfTrailingZeros(bits)];
+            }
+            frontier = grown & empty & ~reached;
+            reached |= frontier;
+        }
+        return reached;
+    }
+
+    // The empty squares and the queens' squares, with the queens sorted so that interchangeable queens share a key.
+    private long key(int empty) {
+        long key = empty;
+        int shift = MAX_LOCAL;
+        for (int q = 0; q < queenCount; q++) {
+            int rank = 0;
+            for (int other = 0; other < queenCount; other++) {
+                if (queens[other] < queens[q]) {
+                    rank++;
+                }
+            }
+            key |= (long) queens[q] << (shift + rank * LOCAL_BITS);
+        }
+        return key;
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 29);
+    }
+}
@@ -0,0 +1,167 @@
+package ubc.cosc322.algorithms;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A fixed set of long-lived search threads owned by one MonteCarloTreeSearch.
+ *
+ * A search is handed to the scheduler once per move: every worker calls the same Worker with its own index and keeps
+ * iterating inside it until the search's own stop condition, so there are no rounds, no per-round tasks and no barrier
+ * between iterations. A search either blocks the caller (run) or continues in the background (start, then await),
+ * which is how pondering searches while the game client waits for the opponent.
+ * Between searches the workers sleep on the scheduler's monitor.
+ */
+public class SearchScheduler {
+    private static final Logger LOG = Logger.getLogger(SearchScheduler.class.getName());
+
+    /**
+     * The body of a search, run once by every worker.
+     */
+    public interface Worker {
+        /**
+         * Runs this worker's share of the search and returns when the search is over.
+         *
+         * @param index The worker's index, from 0 to threads() - 1.
+         */
+        void run(int index);
+    }
+
+    private final Thread[] threads;
+    private Worker job;
+    private int generation; // Incremented for every search, so a waking worker knows whether there is new work
+    private int running; // Workers still inside the current job
+    private boolean shutdown;
+
+    /**
+     * Starts the worker threads.
+     *
+     * @param threadCount The number of threads taking part in each search.
+     */
+    public SearchScheduler(int threadCount) {
+        threads = new Thread[Math.max(1, threadCount)];
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> workLoop(index), "mcts-worker-" + index);
+            threads[i].setDaemon(true); // Never keep the client alive after the game ends
+            threads[i].start();
+        }
+    }
+
+    /**
+     * @return The number of threads taking part in each search.
+     */
+    public int threads() {
+        return threads.length;
+    }
+
+    /**
+     * Runs a search on every worker and returns once all of them have returned from it.
+     *
+     * @param worker The search body.
+     */
+    public void run(Worker worker) {
+        start(worker);
+        await();
+    }
+
+    /**
+     * Starts a search on every worker without waiting for it. The search must be given a way to stop, and await()
+     * must be called before the next search is started.
+     *
+     * @param worker The search body.
+     */
+    public synchronized void start(Worker worker) {
+        job = worker;
+        running = threads.length;
+        generation++;
+        notifyAll();
+    }
+
+    /**
+     * @return true if a search started with start() or run() still has workers inside it.
+     */
+    public synchronized boolean isRunning() {
+        return running > 0;
+    }
+
+    /**
+     * Waits until every worker has returned from the current search, if any.
+     */
+    public void await() {
+        boolean interrupted = false;
+        synchronized (this) {
+            // The workers stop on the search's own deadline, so wait for them even if this thread is interrupted.
+            while (running > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            job = null;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until every worker has returned from the current search, or until the timeout passes.
+     * Used by a caller that supervises a running search, e.g. to move its deadline.
+     *
+     * @param timeoutMillis The longest time to wait.
+     * @return true if the search is over, false if the timeout passed first.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public synchronized boolean await(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (running > 0 && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return running == 0;
+    }
+
+    /**
+     * Stops the worker threads once they finish the current search, if any.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        notifyAll();
+    }
+
+    private void workLoop(int index) {
+        int seen = 0;
+        while (true) {
+            Worker worker;
+            synchronized (this) {
+                while (generation == seen && !shutdown) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (shutdown) {
+                    return;
+                }
+                seen = generation;
+                worker = job;
+            }
+            try {
+                worker.run(index);
+            } catch (RuntimeException e) {
+                // Keep the thread alive for the next search; this search just loses one worker.
+                LOG.log(Level.SEVERE, Thread.currentThread().getName() + " failed", e);
+            } finally {
+                synchronized (this) {
+                    if (--running == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package ubc.cosc322.algorithms;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.Move;
+import ubc.cosc322.core.MoveGenerator;
+
+/**
+ * The Monte Carlo search tree, stored as parallel primitive arrays instead of Node objects.
+ *
+ * A node is an int index into the arrays. Only the children progressive widening has made visible take up slots: expanding
+ * a node just counts its legal moves, and every activate() allocates one slot at the end of the arrays for the next
+ * untried move and links it into the node's list of children. The untried moves are not stored anywhere. They are
+ * regenerated from the node's position when the next one is needed, and taken in an order fixed by the node's key (see
+ * untriedMove), so the k-th child revealed is always the same move and no move is revealed twice.
+ * A node costs BYTES_PER_NODE bytes and holds no Board; the search replays the moves from the root onto a scratch board
+ * on the way down.
+ *
+ * Visits and score are packed into one long per node (as in the TranspositionTable) and updated with a single atomic
+ * add, and children are claimed and linked with compare-and-set, so any number of threads can search the tree without
+ * locks. Node 0 is always the root. Once the arrays are full, isFull() reports it and no more children can be revealed
+ * until prune() collapses the least visited subtrees; until then the search simply keeps simulating from the leaves.
+ */
+public class SearchTree {
+    /**
+     * The memory used by one node across all arrays (including the compaction buffer).
+     */
+    public static final int BYTES_PER_NODE = 44;
+    /**
+     * An index no node can have.
+     */
+    public static final int NONE = -1;
+    /**
+     * The index of the root node.
+     */
+    public static final int ROOT = 0;
+    /**
+     * The fewest nodes a tree holds whatever its budget: the root and a child for every move it could have, so the
+     * root can always be fully revealed.
+     */
+    public static final int MIN_CAPACITY = MoveGenerator.MAX_MOVES + 1;
+    private static final int UNEXPANDED = -1; // legalMoves of a node whose moves have not been counted
+
+    private final int capacity;
+    private final int[] moves; // The move leading to the node; Move.NONE for the root
+    private final AtomicLongArray stats; // Visits in the high 32 bits, signed score in the low 32 bits
+    private final long[] keys; // Transposition table key of the node's position
+    private final int[] parents;
+    private final AtomicIntegerArray firstChild; // The most recently revealed child, or NONE
+    private final int[] nextSibling; // The child of the same parent revealed before this one, or NONE
+    private final AtomicIntegerArray legalMoves; // Number of legal moves, or UNEXPANDED
+    private final AtomicIntegerArray activeChildren; // Number of children claimed by activate()
+    private final AtomicInteger size = new AtomicInteger();
+    private int[] forward; // Old to new indices during compaction, allocated on first use
+    private volatile boolean full; // A child could not be revealed for lack of space since the last compaction
+    // The last prune freed nothing, so the tree stops reporting itself full until the next reset or promote; the search
+    // would otherwise stop to prune it again after every iteration.
+    private volatile boolean saturated;
+
+    private final Board rootState = new Board();
+    private int rootPlayer; // The player to move at the root
+    private boolean twoStage;
+
+    /**
+     * Creates an empty tree sized to fit in the given memory budget, but with room for at least MIN_CAPACITY nodes.
+     *
+     * @param memoryBudgetBytes The maximum number of bytes the node arrays may use.
+     */
+    public SearchTree(long memoryBudgetBytes) {
+        capacity = (int) Math.max(MIN_CAPACITY, Math.min(Integer.MAX_VALUE - 8, memoryBudgetBytes / BYTES_PER_NODE));
+        moves = new int[capacity];
+        stats = new AtomicLongArray(capacity);
+        keys = new long[capacity];
+        parents = new int[capacity];
+        firstChild = new AtomicIntegerArray(capacity);
+        nextSibling = new int[capacity];
+        legalMoves = new AtomicIntegerArray(capacity);
+        activeChildren = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * Discards every node and starts a new tree with only a root for the given position.
+     *
+     * @param board The root position; copied, so the caller may keep changing it.
+     * @param playerToMove The player to move at the root.
+     * @param twoStage true to split every move into a queen step node and an arrow node.
+     */
+    public void reset(Board board, int playerToMove, boolean twoStage) {
+        rootState.copyFrom(board);
+        rootPlayer = playerToMove;
+        this.twoStage = twoStage;
+        initialize(ROOT, Move.NONE, NONE, TranspositionTable.key(board, 3 - playerToMove));
+        size.set(1);
+        full = false;
+        saturated = false;
+    }
+
+    /**
+     * Discards every node. The tree is unusable until the next reset.
+     */
+    public void clear() {
+        size.set(0);
+        full = false;
+        saturated = false;
+    }
+
+    /**
+     * @return true if the tree has a root, i.e. it was reset and not cleared since.
+     */
+    public boolean hasRoot() {
+        return size.get() > 0;
+    }
+
+    /**
+     * @return true if the tree splits moves into queen step and arrow nodes.
+     */
+    public boolean isTwoStage() {
+        return twoStage;
+    }
+
+    /**
+     * @return The position at the root. Must not be modified.
+     */
+    public Board getRootState() {
+        return rootState;
+    }
+
+    /**
+     * @return The player to move at the root.
+     */
+    public int getRootPlayer() {
+        return rootPlayer;
+    }
+
+    /**
+     * @return The number of slots in use, including children revealed but not visited yet.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return true if a child could not be revealed because the arrays are full, no prune or promote has made room since,
+     *         and the last prune did free some space.
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * @return The number of nodes the tree can hold.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    public int getMove(int node) {
+        return moves[node];
+    }
+
+    public int getVisits(int node) {
+        return TranspositionTable.visits(stats.get(node));
+    }
+
+    public int getScore(int node) {
+        return TranspositionTable.score(stats.get(node));
+    }
+
+    public long getKey(int node) {
+        return keys[node];
+    }
+
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * Starts a walk over the visible children of a node, newest first: getNextSibling() gives the rest.
+     *
+     * @param node A node.
+     * @return The node's most recently revealed child, or NONE if it has none.
+     */
+    public int getFirstChild(int node) {
+        return firstChild.get(node);
+    }
+
+    /**
+     * @param child A child returned by getFirstChild() or getNextSibling().
+     * @return The next child of the same parent, or NONE after the last one.
+     */
+    public int getNextSibling(int child) {
+        return nextSibling[child];
+    }
+
+    /**
+     * @param node A node.
+     * @return true if the node's legal moves have been counted (possibly none, for a finished game).
+     */
+    public boolean isExpanded(int node) {
+        return legalMoves.get(node) != UNEXPANDED;
+    }
+
+    /**
+     * @param node A node.
+     * @return true if the node's move is a queen step whose arrow is still to be chosen by its children.
+     */
+    public boolean isAwaitingArrow(int node) {
+        return node != ROOT && !Move.hasArrow(moves[node]);
+    }
+
+    /**
+     * Adds visits and score to a node.
+     *
+     * @param node The node.
+     * @param visits The number of visits to add.
+     * @param score The score to add.
+     */
+    public void update(int node, int visits, int score) {
+        stats.addAndGet(node, TranspositionTable.pack(visits, score));
+    }
+
+    /**
+     * Expands a node: counts its legal moves, which activate() then reveals one child at a time. Threads racing to
+     * expand the same node count the same moves, so whichever finishes first wins.
+     *
+     * @param node The node to expand.
+     * @param state The node's position; used as scratch space and restored before returning.
+     * @param playerToMove The player to move in the node's position (the queen's owner for a node awaiting its arrow).
+     * @param buffer A buffer of MoveGenerator.MAX_MOVES ints.
+     */
+    public void expand(int node, Board state, int playerToMove, int[] buffer) {
+        if (legalMoves.get(node) == UNEXPANDED) {
+            legalMoves.compareAndSet(node, UNEXPANDED, generate(node, state, playerToMove, buffer));
+        }
+    }
+
+    /**
+     * Reveals one more child of an expanded node, if the node has fewer visible children than the limit: takes the
+     * next untried move, allocates a slot for it and links it into the node's children. Finds the tree full and
+     * reveals nothing when there is no slot left.
+     *
+     * @param node An expanded node.
+     * @param limit The progressive widening limit for the node's visit count.
+     * @param state The node's position; used as scratch space and restored before returning.
+     * @param playerToMove The player to move in the node's position (the queen's owner for a node awaiting its arrow).
+     * @param buffer A buffer of MoveGenerator.MAX_MOVES ints.
+     * @return The newly visible child, or NONE if the node is at its limit, out of moves, or the tree is full.
+     */
+    public int activate(int node, int limit, Board state, int playerToMove, int[] buffer) {
+        int max = Math.min(limit, legalMoves.get(node));
+        if (activeChildren.get(node) >= max) {
+            return NONE; // The common case, decided before taking a slot
+        }
+        int child = allocate();
+        if (child == NONE) {
+            full = !saturated;
+            return NONE;
+        }
+        int index;
+        do {
+            index = activeChildren.get(node);
+            if (index >= max) {
+                initialize(child, Move.NONE, NONE, 0L); // Another thread took the last place; compaction drops the slot
+                return NONE;
+            }
+        } while (!activeChildren.compareAndSet(node, index, index + 1));
+        int childMove = untriedMove(node, index, state, playerToMove, buffer);
+        // The child's key needs the child's position: play the move, hash, and take it back.
+        boolean awaitingArrow = isAwaitingArrow(node);
+        if (awaitingArrow) {
+            state.placeArrow(Move.arrow(childMove));
+        } else if (!Move.hasArrow(childMove)) {
+            state.moveQueen(Move.from(childMove), Move.to(childMove));
+        } else {
+            state.makeMove(childMove);
+        }
+        initialize(child, childMove, node, TranspositionTable.key(state, playerToMove));
+        if (awaitingArrow) {
+            state.removeArrow(Move.arrow(childMove));
+        } else if (!Move.hasArrow(childMove)) {
+            state.moveQueen(Move.to(childMove), Move.from(childMove));
+        } else {
+            state.unmakeMove(childMove);
+        }
+        int head;
+        do {
+            head = firstChild.get(node);
+            nextSibling[child] = head;
+        } while (!firstChild.compareAndSet(node, head, child)); // Publishes the child
+        return child;
+    }
+
+    /**
+     * Picks the move of a node's index-th revealed child. The node's legal moves are generated again, in the same
+     * order every time, and walked in the order of an affine permutation i -> (a * i + b) mod count whose multiplier
+     * a (coprime with count) and offset b come from the node's key. Consecutive children are therefore spread over
+     * all queens rather than taken from the first one, and no record of the moves already tried is needed.
+     *
+     * @param node An expanded node.
+     * @param index The child's place in the order of revealing, below the node's number of legal moves.
+     * @param state The node's position.
+     * @param playerToMove The player to move in the node's position.
+     * @param buffer A buffer of MoveGenerator.MAX_MOVES ints.
+     * @return The move.
+     */
+    private int untriedMove(int node, int index, Board state, int playerToMove, int[] buffer) {
+        int count = generate(node, state, playerToMove, buffer);
+        if (count == 1) {
+            return buffer[0];
+        }
+        long seed = keys[node] * 0x9E3779B97F4A7C15L;
+        int multiplier = 1 + (int) Long.remainderUnsigned(seed, count - 1);
+        while (gcd(multiplier, count) != 1) {
+            multiplier++; // Stops at count - 1 at the latest
+        }
+        int offset = (int) Long.remainderUnsigned(seed >>> 32, count);
+        return buffer[(int) (((long) multiplier * index + offset) % count)];
+    }
+
+    // Generates the moves of a node's children into the buffer; the arrows alone for a node awaiting its arrow.
+    private int generate(int node, Board state, int playerToMove, int[] buffer) {
+        int move = moves[node];
+        if (isAwaitingArrow(node)) {
+            // Arrow stage: every square the moved queen can shoot to completes the move.
+            int count = MoveGenerator.generate(state, Move.to(move), buffer, 0);
+            for (int i = 0; i < count; i++) {
+                buffer[i] = Move.encode(Move.from(move), Move.to(move), buffer[i]);
+            }
+            return count;
+        } else if (twoStage) {
+            return MoveGenerator.generateQueenSteps(state, playerToMove, buffer);
+        }
+        return state.getAllPossibleMoves(playerToMove, buffer);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    /**
+     * @param node A node.
+     * @param move An encoded move.
+     * @return The visible child of the node reached by the move, or NONE.
+     */
+    public int findChild(int node, int move) {
+        for (int child = firstChild.get(node); child != NONE; child = nextSibling[child]) {
+            if (moves[child] == move) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Makes a node the new root, for example the position after our move and the opponent's reply, and compacts its
+     * subtree to the front of the arrays so the space of every other node can be used again.
+     * Must not run while another thread is searching the tree.
+     *
+     * @param node A complete-move node (not awaiting its arrow) one full move below the root.
+     */
+    public synchronized void promote(int node) {
+        rootState.makeMove(moves[node]);
+        rootPlayer = 3 - rootPlayer;
+        compact(node);
+        saturated = false;
+    }
+
+    /**
+     * Frees space by collapsing the least visited subtrees: the children below every node with fewer visits than a
+     * threshold are dropped, and the node becomes a leaf again whose statistics still hold the results of its whole
+     * former subtree. The threshold is the smallest power of two that frees at least the requested fraction of the
+     * nodes in use. The root's own children are never dropped, but compaction moves them, so a thread reading the tree
+     * while a search runs (such as the time manager's supervisor) must hold the tree's lock, which this method takes.
+     * Must not run while another thread is searching the tree.
+     *
+     * @param fraction The fraction of the nodes in use to free, between 0 and 1.
+     * @return The number of nodes freed.
+     */
+    public synchronized int prune(double fraction) {
+        int used = size.get();
+        // Every slot below a node is a child of some descendant, and descendants have no more visits than their
+        // ancestors, so summing child counts by the visit count of their parent tells what each threshold frees.
+        long[] freedBelow = new long[Integer.SIZE + 1];
+        for (int i = ROOT + 1; i < used; i++) {
+            if (firstChild.get(i) != NONE) {
+                freedBelow[Integer.SIZE - Integer.numberOfLeadingZeros(getVisits(i))] += activeChildren.get(i);
+            }
+        }
+        long target = (long) (used * fraction);
+        int bucket = 0;
+        long freed = freedBelow[0];
+        while (freed < target && bucket < Integer.SIZE) {
+            freed += freedBelow[++bucket];
+        }
+        for (int i = ROOT + 1; i < used; i++) {
+            if (firstChild.get(i) != NONE && Integer.SIZE - Integer.numberOfLeadingZeros(getVisits(i)) <= bucket) {
+                firstChild.set(i, NONE);
+                activeChildren.set(i, 0); // Revealing starts over, with the same moves in the same order
+            }
+        }
+        compact(ROOT);
+        saturated = size.get() == used;
+        return used - size.get();
+    }
+
+    /**
+     * Moves the subtree of a node to the front of the arrays with the node as the root, dropping every other node, the
+     * children of every collapsed node and the slots activate() gave up.
+     *
+     * @param node The new root.
+     */
+    private void compact(int node) {
+        int used = size.get();
+        if (forward == null) {
+            forward = new int[capacity];
+        }
+        Arrays.fill(forward, 0, used, NONE);
+        forward[node] = ROOT;
+        copy(node, ROOT);
+        moves[ROOT] = Move.NONE;
+        parents[ROOT] = NONE;
+        nextSibling[ROOT] = NONE;
+        int next = ROOT + 1;
+        // A child is always allocated after its parent's slot, so one pass in index order sees every parent before its
+        // children. A parent's new slot is written once and before its children are reached, so it tells whether the
+        // parent still has its children.
+        for (int old = node + 1; old < used; old++) {
+            int parent = parents[old];
+            if (parent >= 0 && forward[parent] != NONE && firstChild.get(forward[parent]) != NONE) {
+                forward[old] = next;
+                copy(old, next);
+                parents[next] = forward[parent];
+                next++;
+            }
+        }
+        // Every sibling of a kept child is kept too, so the links only need renumbering.
+        for (int i = ROOT; i < next; i++) {
+            int first = firstChild.get(i);
+            if (first != NONE) {
+                firstChild.set(i, forward[first]);
+            }
+            if (i != ROOT && nextSibling[i] != NONE) {
+                nextSibling[i] = forward[nextSibling[i]];
+            }
+        }
+        size.set(next);
+        full = false;
+    }
+
+    private void copy(int from, int to) {
+        moves[to] = moves[from];
+        stats.set(to, stats.get(from));
+        keys[to] = keys[from];
+        parents[to] = parents[from];
+        firstChild.set(to, firstChild.get(from));
+        nextSibling[to] = nextSibling[from];
+        legalMoves.set(to, legalMoves.get(from));
+        activeChildren.set(to, activeChildren.get(from));
+    }
+
+    private void initialize(int node, int move, int parent, long key) {
+        moves[node] = move;
+        stats.set(node, 0L);
+        keys[node] = key;
+        parents[node] = parent;
+        firstChild.set(node, NONE);
+        nextSibling[node] = NONE;
+        legalMoves.set(node, UNEXPANDED);
+        activeChildren.set(node, 0);
+    }
+
+    // Reserves a slot at the end of the arrays, or returns NONE if they are full.
+    private int allocate() {
+        int slot;
+        do {
+            slot = size.get();
+            if (slot >= capacity) {
+                return NONE;
+            }
+        } while (!size.compareAndSet(slot, slot + 1));
+        return slot;
+    }
+}
@@ -0,0 +1,145 @@
+package ubc.cosc322.algorithms;
+
+import java.util.Arrays;
+
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.MoveGenerator;
+
+/**
+ * Static evaluation of an Amazons position by territory, used to score playouts that are cut off before the end.
+ *
+ * For both players a multi-source breadth-first flood from all of their queens gives every empty square two
+ * distances: the number of queen moves needed to reach it, and the number of king moves (single steps). A square
+ * belongs to the player who reaches it in fewer moves; on a tie the player to move gets there first. The queen
+ * territory decides who controls open areas, the king territory refines it where the board is crowded.
+ * Squares neither player can reach count for nobody.
+ *
+ * The floods advance one distance level at a time over 128-bit square sets (two longs, as in Board), and the distances
+ * land in flat arrays indexed by square, so an evaluation allocates nothing.
+ * An instance holds that scratch space and must not be shared between threads; PlayoutEngine owns one per thread.
+ */
+public class TerritoryEvaluator {
+    private static final int SQUARES = Board.DEFAULT_BOARD_SIZE * Board.DEFAULT_BOARD_SIZE;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    // How much a square won on king distance counts next to one won on queen distance.
+    static final double KING_WEIGHT = 0.5;
+    // The value of a square both players reach in the same number of moves, for the player to move.
+    static final double TIE_VALUE = 0.2;
+
+    private final int[] queenDistance1 = new int[SQUARES];
+    private final int[] queenDistance2 = new int[SQUARES];
+    private final int[] kingDistance1 = new int[SQUARES];
+    private final int[] kingDistance2 = new int[SQUARES];
+    private final long[] reach = new long[2];
+    private final long[] next = new long[2];
+    private final int[] queens = new int[MoveGenerator.QUEENS_PER_PLAYER];
+
+    /**
+     * Evaluates a position by territory.
+     *
+     * @param board The position.
+     * @param playerToMove The player to move, who wins ties on distance.
+     * @return The territory balance: positive if Board.P1 controls more of the board, negative for Board.P2.
+     */
+    public double evaluate(Board board, int playerToMove) {
+        long emptyLo = ~board.getOccupiedLo();
+        long emptyHi = ~board.getOccupiedHi() & Board.HI_WORD_MASK;
+        flood(board, Board.P1, queenDistance1, true, emptyLo, emptyHi);
+        flood(board, Board.P2, queenDistance2, true, emptyLo, emptyHi);
+        flood(board, Board.P1, kingDistance1, false, emptyLo, emptyHi);
+        flood(board, Board.P2, kingDistance2, false, emptyLo, emptyHi);
+        double tie = playerToMove == Board.P1 ? TIE_VALUE : -TIE_VALUE;
+        double queenTerritory = 0;
+        double kingTerritory = 0;
+        for (int square = 0; square < SQUARES; square++) {
+            if (board.isEmpty(square)) {
+                queenTerritory += owner(queenDistance1[square], queenDistance2[square], tie);
+                kingTerritory += owner(kingDistance1[square], kingDistance2[square], tie);
+            }
+        }
+        return queenTerritory + KING_WEIGHT * kingTerritory;
+    }
+
+    /**
+     * Predicts the winner of a position from its territory balance. An even balance goes to the player who is not to
+     * move, since with equal room the player to move runs out of moves first.
+     *
+     * @param board The position.
+     * @param playerToMove The player to move.
+     * @return Board.P1 or Board.P2.
+     */
+    public int predictWinner(Board board, int playerToMove) {
+        double balance = evaluate(board, playerToMove);
+        if (balance > 0) {
+            return Board.P1;
+        } else if (balance < 0) {
+            return Board.P2;
+        }
+        return 3 - playerToMove;
+    }
+
+    // The share of a square for Board.P1 given both players' distances to it.
+    private static double owner(int distance1, int distance2, double tie) {
+        if (distance1 < distance2) {
+            return 1;
+        } else if (distance2 < distance1) {
+            return -1;
+        }
+        return distance1 == UNREACHED ? 0 : tie;
+    }
+
+    /**
+     * Computes the distance of every empty square from the nearest queen of a player, in queen moves or king moves.
+     * Both floods stop at queens and arrows, like real moves.
+     *
+     * @param board The position.
+     * @param playerNo The player whose queens are the sources.
+     * @param distance Receives the distances; UNREACHED for squares the player cannot reach.
+     * @param queenMoves true to count queen moves, false to count king moves.
+     * @param emptyLo The empty squares 0-63.
+     * @param emptyHi The empty squares 64-99.
+     */
+    private void flood(Board board, int playerNo, int[] distance, boolean queenMoves, long emptyLo, long emptyHi) {
+        Arrays.fill(distance, UNREACHED);
+        long frontierLo = 0;
+        long frontierHi = 0;
+        int queenCount = board.getQueenSquares(playerNo, queens);
+        for (int i = 0; i < queenCount; i++) {
+            if (queens[i] < 64) frontierLo |= 1L << queens[i];
+            else frontierHi |= 1L << queens[i];
+        }
+        long unvisitedLo = emptyLo;
+        long unvisitedHi = emptyHi;
+        for (int level = 1; (frontierLo | frontierHi) != 0; level++) {
+            next[0] = 0;
+            next[1] = 0;
+            step(board, frontierLo, 0, queenMoves);
+            step(board, frontierHi, 64, queenMoves);
+            frontierLo = next[0] & unvisitedLo;
+            frontierHi = next[1] & unvisitedHi;
+            unvisitedLo &= ~frontierLo;
+            unvisitedHi &= ~frontierHi;
+            for (long bits = frontierLo; bits != 0; bits &= bits - 1) {
+                distance[Long.numberOfTrailingZeros(bits)] = level;
+            }
+            for (long bits = frontierHi; bits != 0; bits &= bits - 1) {
+                distance[64 + Long.numberOfTrailingZeros(bits)] = level;
+            }
+        }
+    }
+
+    // Adds the squares one move away from every square of a frontier word (bit i is square base + i) to next.
+    private void step(Board board, long frontier, int base, boolean queenMoves) {
+        for (long bits = frontier; bits != 0; bits &= bits - 1) {
+            int square = base + Long.numberOfTrailingZeros(bits);
+            if (queenMoves) {
+                MoveGenerator.reachable(board, square, reach);
+                next[0] |= reach[0];
+                next[1] |= reach[1];
+            } else {
+                next[0] |= MoveGenerator.neighboursLo(square);
+                next[1] |= MoveGenerator.neighboursHi(square);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ubc.cosc322.algorithms;
+
+import ubc.cosc322.core.Board;
+
+/**
+ * Decides how long the Monte Carlo Tree Search may think about each move.
+ *
+ * The base budget of a move depends on the game phase (how many squares are still empty) and on the number of legal
+ * moves at the root: a position with two or three moves needs a fraction of the time of an opening with two thousand.
+ * While the search runs it is asked two questions: can it stop now, because the most visited root move can no longer
+ * be overtaken in the time left, and should it keep going past the budget, because the two best moves are still close
+ * and the game is not already decided. Extensions end at EXTENSION_FACTOR times the budget.
+ * Time saved by early stops goes into a bank that later budgets draw from, so hard moves get what easy moves left over.
+ * No move ever gets more than HARD_LIMIT_MILLIS.
+ */
+public class TimeManager {
+    /**
+     * The most a single move may take, including extensions; the server allows 30 seconds.
+     */
+    public static final long HARD_LIMIT_MILLIS = 25000;
+    // The budget of a hard midgame position before extensions and banked time.
+    static final long BASE_LIMIT_MILLIS = 15000;
+    // Even a forced move gets a short search so there is a root child to play.
+    static final long MIN_LIMIT_MILLIS = 100;
+    // Positions with at least this many root moves get the full base budget; fewer moves scale it down logarithmically.
+    static final int REFERENCE_BRANCHING = 400;
+    // Phase boundaries in empty squares. The opening has 92; below ENDGAME_EMPTY_SQUARES the board is mostly partitioned.
+    static final int OPENING_EMPTY_SQUARES = 72;
+    static final int ENDGAME_EMPTY_SQUARES = 40;
+    static final double OPENING_WEIGHT = 0.75;
+    static final double MIDGAME_WEIGHT = 1.0;
+    static final double ENDGAME_WEIGHT = 0.6;
+    // The second best move is "close" when it has at least this fraction of the best move's visits.
+    static final double CLOSE_FRACTION = 0.8;
+    // A best move whose average result is beyond this (in [-1, 1]) is a sure win or loss, and more time will not change that.
+    static final double DECIDED_VALUE = 0.9;
+    // A move may be extended to at most this multiple of its budget.
+    static final int EXTENSION_FACTOR = 2;
+    // Fraction of the bank added to each budget.
+    static final double BANK_DRAW = 0.25;
+
+    private long bankMillis;
+
+    /**
+     * Computes the thinking time for a move and takes its share of the time bank.
+     *
+     * @param board The position to move in.
+     * @param branching The number of legal moves at the root.
+     * @return The time budget, in milliseconds.
+     */
+    public long allocate(Board board, int branching) {
+        if (branching <= 1) {
+            return MIN_LIMIT_MILLIS;
+        }
+        int empty = board.countEmptySquares();
+        double phaseWeight = empty > OPENING_EMPTY_SQUARES ? OPENING_WEIGHT
+                : empty > ENDGAME_EMPTY_SQUARES ? MIDGAME_WEIGHT : ENDGAME_WEIGHT;
+        double branchingWeight = Math.min(1.0, Math.log(branching) / Math.log(REFERENCE_BRANCHING));
+        long budget = (long) (BASE_LIMIT_MILLIS * phaseWeight * branchingWeight);
+        long fromBank = (long) (bankMillis * BANK_DRAW);
+        bankMillis -= fromBank;
+        return Math.max(MIN_LIMIT_MILLIS, Math.min(HARD_LIMIT_MILLIS, budget + fromBank));
+    }
+
+    /**
+     * Checks whether the search can stop: the runner-up could not catch the leader even if every remaining visit went
+     * to it at the current search speed.
+     *
+     * @param bestVisits Visits of the most visited root move.
+     * @param secondVisits Visits of the second most visited root move.
+     * @param visitsPerMilli The search speed so far.
+     * @param remainingMillis Time left until the current deadline.
+     * @return true if the decision cannot change any more.
+     */
+    public boolean canStopEarly(long bestVisits, long secondVisits, double visitsPerMilli, long remainingMillis) {
+        return bestVisits - secondVisits > visitsPerMilli * remainingMillis;
+    }
+
+    /**
+     * Called when the search reaches its deadline: moves the deadline back if the two best root moves are close.
+     *
+     * @param bestVisits Visits of the most visited root move.
+     * @param secondVisits Visits of the second most visited root move.
+     * @param bestValue The average result of the most visited move for the player choosing it, in [-1, 1].
+     * @param start When the search started, in System.currentTimeMillis() time.
+     * @param budget The budget returned by allocate.
+     * @param deadline The current deadline.
+     * @return The new deadline, or the current one if the search should end.
+     */
+    public long extend(long bestVisits, long secondVisits, double bestValue, long start, long budget, long deadline) {
+        if (bestVisits == 0 || secondVisits < CLOSE_FRACTION * bestVisits || Math.abs(bestValue) >= DECIDED_VALUE) {
+            return deadline;
+        }
+        long limit = Math.min(start + HARD_LIMIT_MILLIS, start + EXTENSION_FACTOR * budget);
+        return Math.max(deadline, Math.min(limit, deadline + budget / 2));
+    }
+
+    /**
+     * Records how long a move actually took, banking the unused part of its budget or charging an overrun to the bank.
+     *
+     * @param budget The budget returned by allocate.
+     * @param usedMillis The time the search ran.
+     */
+    public void moveFinished(long budget, long usedMillis) {
+        bankMillis = Math.max(0, bankMillis + budget - usedMillis);
+    }
+
+    /**
+     * Empties the time bank, e.g. between games.
+     */
+    public void reset() {
+        bankMillis = 0;
+    }
+}
@@ -0,0 +1,155 @@
+package ubc.cosc322.algorithms;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import ubc.cosc322.core.Board;
+
+/**
+ * A bounded, lock-free transposition table that lets the Monte Carlo Tree Search share visit and score statistics
+ * between nodes that reach the same position through different move orders.
+ *
+ * Entries are keyed by the board's Zobrist hash combined with the player who made the last move. The table is split
+ * into two-slot buckets: a key lives in one of the two slots of the bucket its hash maps to. When both slots hold other
+ * keys, the slot with fewer visits is replaced, so heavily searched positions survive while one-off entries are recycled.
+ *
+ * Each slot is two longs (the key and the packed statistics), updated with compare-and-set. Like any transposition table
+ * it is lossy by design: a racing replacement can drop an update, which only costs a little statistical precision.
+ */
+public class TranspositionTable {
+    /**
+     * The memory used by one slot: a long for the key and a long for the packed statistics.
+     */
+    public static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_SIZE = 2;
+    private static final long EMPTY = 0L;
+    // Mixed into the key when the last move was made by player 2, so the same position with different players to move is kept apart.
+    private static final long PLAYER2_KEY = 0x9E3779B97F4A7C15L;
+
+    private final AtomicLongArray keys;
+    private final AtomicLongArray stats; // Visits in the high 32 bits, signed score in the low 32 bits
+    private final int bucketMask;
+
+    /**
+     * Creates a table sized to fit in the given memory budget. The number of buckets is rounded down to a power of two.
+     *
+     * @param memoryBudgetBytes The maximum number of bytes the table may use for its entries.
+     */
+    public TranspositionTable(long memoryBudgetBytes) {
+        long buckets = Math.max(1L, memoryBudgetBytes / (ENTRY_BYTES * BUCKET_SIZE));
+        buckets = Long.highestOneBit(Math.min(buckets, 1L << 29));
+        this.keys = new AtomicLongArray((int) buckets * BUCKET_SIZE);
+        this.stats = new AtomicLongArray((int) buckets * BUCKET_SIZE);
+        this.bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * Computes the table key of a position.
+     *
+     * @param board The position.
+     * @param lastPlayer The player who made the move that reached this position.
+     * @return The key to use with update() and probe().
+     */
+    public static long key(Board board, int lastPlayer) {
+        long key = board.getHash() ^ (lastPlayer == Board.P2 ? PLAYER2_KEY : 0L);
+        return key == EMPTY ? 1L : key; // Reserve 0 for empty slots
+    }
+
+    /**
+     * Adds visits and score to the entry for a key, claiming or replacing a slot if the key is not present. An update
+     * that adds no visits only corrects an existing entry: if the key was evicted in the meantime it is dropped, so a
+     * score correction never starts an entry of its own.
+     *
+     * @param key The position key.
+     * @param visits The number of visits to add.
+     * @param score The score to add.
+     */
+    public void update(long key, int visits, int score) {
+        int first = bucketIndex(key);
+        long delta = pack(visits, score);
+        for (int slot = first; slot < first + BUCKET_SIZE; slot++) {
+            if (keys.get(slot) == key) {
+                stats.addAndGet(slot, delta);
+                return;
+            }
+        }
+        if (visits == 0) {
+            return;
+        }
+        // Not present: take an empty slot, or else evict the slot with fewer visits.
+        int victim = first;
+        for (int slot = first; slot < first + BUCKET_SIZE; slot++) {
+            if (keys.get(slot) == EMPTY) {
+                victim = slot;
+                break;
+            }
+            if (visits(stats.get(slot)) < visits(stats.get(victim))) {
+                victim = slot;
+            }
+        }
+        long previousKey = keys.get(victim);
+        if (keys.compareAndSet(victim, previousKey, key)) {
+            stats.set(victim, delta);
+        }
+    }
+
+    /**
+     * Looks up the statistics stored for a key.
+     *
+     * @param key The position key.
+     * @return The packed statistics (read them with visits() and score()), or 0 if the key is not in the table.
+     */
+    public long probe(long key) {
+        int first = bucketIndex(key);
+        for (int slot = first; slot < first + BUCKET_SIZE; slot++) {
+            if (keys.get(slot) == key) {
+                long packed = stats.get(slot);
+                // Re-check the key so statistics that were just handed to another position are not returned.
+                return keys.get(slot) == key ? packed : 0L;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Empties the table, e.g. between games.
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length(); i++) {
+            keys.set(i, EMPTY);
+            stats.set(i, 0L);
+        }
+    }
+
+    /**
+     * @return The number of slots in the table.
+     */
+    public int capacity() {
+        return keys.length();
+    }
+
+    /**
+     * @param packed Statistics returned by probe().
+     * @return The visit count.
+     */
+    public static int visits(long packed) {
+        return (int) ((packed - score(packed)) >>> 32);
+    }
+
+    /**
+     * @param packed Statistics returned by probe().
+     * @return The accumulated score.
+     */
+    public static int score(long packed) {
+        return (int) packed;
+    }
+
+    // Packing visits and score into one long lets a single atomic add update both. A negative score borrows one from the
+    // visit half, so visits() subtracts the signed score back out before reading the high word. SearchTree uses the same packing.
+    static long pack(int visits, int score) {
+        return ((long) visits << 32) + score;
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE;
+    }
+}
@@ -25,6 +25,25 @@ public class UCT {
                 + explorationConstant * Math.sqrt(Math.log(nodeVisit) / (double) nodeVisit);
     }
 
+    /**
+     * Calculates the UCB1 value of a child from the point of view of the player choosing at its parent.
+     * The average score is normalized to [-1, 1] by the win score, so the exploration term stays on the same scale.
+     *
+     * @param nodeWinScore The accumulated score of the child.
+     * @param nodeVisit The number of visits to the child.
+     * @param parentVisit The number of visits to the parent.
+     * @return The calculated UCT value.
+     */
+    public static double uctValue(double nodeWinScore, int nodeVisit, int parentVisit) {
+        double explorationConstant = 1.41;
+
+        if (nodeVisit == 0) {
+            return Integer.MAX_VALUE; // Encourage exploration of unvisited nodes
+        }
+        return (nodeWinScore / (double) nodeVisit) / Node.WIN_SCORE_VALUE
+                + explorationConstant * Math.sqrt(Math.log(Math.max(parentVisit, 1)) / (double) nodeVisit);
+    }
+
     /**
      * Finds and returns the best node to explore next based on the UCT values of its children.
      * If the node has no children, returns null.
@@ -43,7 +62,39 @@ public class UCT {
 //            //System.out.println("Child UCT Values: Score - " + child.getScore() + " Visit Count - "+ child.getVisitCount());
 //        }
 
+        int parentVisits = node.getVisitCount();
         return Collections.max(node.getChildren(),
-                Comparator.comparing(c -> uctValue(c.getScore(), c.getVisitCount())));
+                Comparator.comparing(c -> uctValue(c.getScore(), c.getVisitCount(), parentVisits)));
+    }
+
+    /**
+     * Finds the best visible child of a node in a SearchTree, using the transposition table statistics of a child when
+     * they hold more visits than the child itself. Both carry the virtual losses of simulations still in flight (see
+     * MonteCarloTreeSearch), so threads spread out over transposed children just as they do over the tree's own.
+     *
+     * @param tree The search tree.
+     * @param node The node whose children are to be evaluated.
+     * @param table The transposition table shared by the search.
+     * @return The child with the highest UCT value, or SearchTree.NONE if the node has no visible children.
+     */
+    public static int findBestChildWithUCT(SearchTree tree, int node, TranspositionTable table) {
+        int parentVisits = tree.getVisits(node);
+        int bestChild = SearchTree.NONE;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = tree.getFirstChild(node); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+            double score = tree.getScore(child);
+            int visits = tree.getVisits(child);
+            long shared = table.probe(tree.getKey(child));
+            if (TranspositionTable.visits(shared) > visits) {
+                score = TranspositionTable.score(shared);
+                visits = TranspositionTable.visits(shared);
+            }
+            double value = uctValue(score, visits, parentVisits);
+            if (value > bestValue) {
+                bestValue = value;
+                bestChild = child;
+            }
+        }
+        return bestChild;
     }
-}
\ No newline at end of file
+}
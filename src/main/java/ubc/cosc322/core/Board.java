@@ -3,9 +3,9 @@ package ubc.cosc322.core;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
-import ubc.cosc322.algorithms.Node;
+import ubc.cosc322.algorithms.PlayoutEngine;
 import ygraph.ai.smartfox.games.BaseGameGUI;
 import ygraph.ai.smartfox.games.GameClient;
 
@@ -17,9 +17,18 @@ import ygraph.ai.smartfox.games.GameClient;
  */
 public class Board {
     public static int randomPlays = 0;
-    public static int gamesPlayed = 0;
-    // The 2D array representing the board state; 0 for empty, 1 for player 1, and 2 for player 2.
-    private int[][] boardValues;
+    // The board state is held as 128-bit masks split over two longs: squares 0-63 live in the "lo" word and squares 64-99 in the "hi" word.
+    // A square is indexed as x * DEFAULT_BOARD_SIZE + y, so bit i of a mask matches boardValues[i / 10][i % 10] of the old 2D layout.
+    private long player1Lo, player1Hi; // Black queens
+    private long player2Lo, player2Hi; // White queens
+    private long arrowLo, arrowHi;     // Burned squares
+    private long occupiedLo, occupiedHi; // Union of the three masks above, kept so emptiness checks are a single test
+    // Queens (of either side) with no free adjacent square. Maintained incrementally by every mutator so that
+    // checkStatus() only has to compare masks instead of scanning the board.
+    private long stuckLo, stuckHi;
+    // Zobrist hash of the position, updated incrementally by every mutator. Identical positions reached through different
+    // move orders share the same hash, which is what the transposition table keys on.
+    private long hash;
     //public static int[][] mainBoardValues;
     public static final int DEFAULT_BOARD_SIZE = 10;
     public static final int IN_PROGRESS = -1;
@@ -28,98 +37,348 @@ public class Board {
     public static final int P2 = 2;
     public static final int ARROW = 3;
     public static final int RANDOM_ARROW = 4;
+    // The bits of a "hi" word that are squares on the board (64-99); the rest of the word is always zero.
+    public static final long HI_WORD_MASK = (1L << (DEFAULT_BOARD_SIZE * DEFAULT_BOARD_SIZE - 64)) - 1;
+    // One random key per (piece, square); pieces are P1, P2 and ARROW. A fixed seed keeps hashes reproducible between runs.
+    private static final long[] ZOBRIST_KEYS = new long[3 * DEFAULT_BOARD_SIZE * DEFAULT_BOARD_SIZE];
+
+    static {
+        SplittableRandom random = new SplittableRandom(322L);
+        for (int i = 0; i < ZOBRIST_KEYS.length; i++) {
+            ZOBRIST_KEYS[i] = random.nextLong();
+        }
+    }
+
     private GameClient gameClient;
     private BaseGameGUI gameGui;
 
     // By introducing a currentPlayer variable at the board level, we can keep track of who is currently playing on the board. Must be updated throughout the game's progression.
     private static int currentPlayer = P1; // P1 always starts the game (black). We just need to know who is P1.
 
-    // Lists to keep track of player positions.
-    // Excellent optimization to avoid O(n^2) runtime complexity of a solution where we scan the board each time
-    private List<Position> player1Positions = new ArrayList<>();
-    private List<Position> player2Positions = new ArrayList<>();
+    // Fixed-size queen index: the squares of each player's (up to) four queens, packed as four 8-bit slots in an int.
+    // Maintained by every mutator, so queen lookups never scan the board, and copied with the masks as two plain ints.
+    private int player1Queens = NO_QUEENS;
+    private int player2Queens = NO_QUEENS;
+    private static final int EMPTY_SLOT = 0xFF; // Any value above the last square index marks a free slot
+    private static final int NO_QUEENS = -1; // All four slots free
+    private static final int SLOT_BITS = 8;
 
     /**
      * Initializes a new Board instance with default size.
      */
     public Board() {
-        this.boardValues = new int[DEFAULT_BOARD_SIZE][DEFAULT_BOARD_SIZE]; // 10 x 10 board
         initializePositions(); // We are now initializing positions in the Board class instead of in MCTS.
     }
 
+    /**
+     * Copy constructor used by clone(). Copies the masks only, so a copy costs a handful of long assignments.
+     *
+     * @param other The board to copy.
+     */
+    private Board(Board other) {
+        this.player1Lo = other.player1Lo;
+        this.player1Hi = other.player1Hi;
+        this.player2Lo = other.player2Lo;
+        this.player2Hi = other.player2Hi;
+        this.arrowLo = other.arrowLo;
+        this.arrowHi = other.arrowHi;
+        this.occupiedLo = other.occupiedLo;
+        this.occupiedHi = other.occupiedHi;
+        this.stuckLo = other.stuckLo;
+        this.stuckHi = other.stuckHi;
+        this.hash = other.hash;
+        this.player1Queens = other.player1Queens;
+        this.player2Queens = other.player2Queens;
+    }
+
     private void initializePositions() {
         // Initial positions for black queens
-        player1Positions.add(new Position(0, 6));
-        player1Positions.add(new Position(3, 9));
-        player1Positions.add(new Position(6, 9));
-        player1Positions.add(new Position(9, 6));
-        for (Position pos : player1Positions) {
-            boardValues[pos.getX()][pos.getY()] = 1;
-        }
+        setValue(square(0, 6), P1);
+        setValue(square(3, 9), P1);
+        setValue(square(6, 9), P1);
+        setValue(square(9, 6), P1);
 
         // Initial positions for white queens
-        player2Positions.add(new Position(0, 3));
-        player2Positions.add(new Position(3, 0));
-        player2Positions.add(new Position(6, 0));
-        player2Positions.add(new Position(9, 3));
-        for (Position pos : player2Positions) {
-            boardValues[pos.getX()][pos.getY()] = 2;
+        setValue(square(0, 3), P2);
+        setValue(square(3, 0), P2);
+        setValue(square(6, 0), P2);
+        setValue(square(9, 3), P2);
+    }
+
+    // Helpers for the packed queen index.
+    private static int queenSlot(int queens, int slot) {
+        return (queens >>> (slot * SLOT_BITS)) & EMPTY_SLOT;
+    }
+
+    private static int replaceQueenSlot(int queens, int oldValue, int newValue) {
+        for (int slot = 0; slot < MoveGenerator.QUEENS_PER_PLAYER; slot++) {
+            if (queenSlot(queens, slot) == oldValue) {
+                int shift = slot * SLOT_BITS;
+                return (queens & ~(EMPTY_SLOT << shift)) | (newValue << shift);
+            }
+        }
+        return queens; // Index full (more than four queens were set up) or square not found
+    }
+
+    /**
+     * Converts a pair of coordinates into the square index used by the masks.
+     *
+     * @param x The x-coordinate (row).
+     * @param y The y-coordinate (column).
+     * @return The square index in the range 0-99.
+     */
+    public static int square(int x, int y) {
+        return x * DEFAULT_BOARD_SIZE + y;
+    }
+
+    /**
+     * Checks whether a square is free, i.e. holds neither a queen nor an arrow.
+     * Java masks shift distances to 6 bits, so (1L << square) selects the right bit in either word.
+     *
+     * @param square The square index.
+     * @return true if the square is empty.
+     */
+    public boolean isEmpty(int square) {
+        long word = square < 64 ? occupiedLo : occupiedHi;
+        return (word & (1L << square)) == 0;
+    }
+
+    /**
+     * Counts the squares that hold neither a queen nor an arrow. Every move fills one square, so this also tells how far
+     * the game has progressed.
+     *
+     * @return The number of empty squares.
+     */
+    public int countEmptySquares() {
+        return DEFAULT_BOARD_SIZE * DEFAULT_BOARD_SIZE - Long.bitCount(occupiedLo) - Long.bitCount(occupiedHi);
+    }
+
+    /**
+     * The occupied squares (queens and arrows) 0-63 as a bit mask. MoveGenerator finds ray blockers with bit scans over
+     * this word, and the territory and region analysis floods over its complement.
+     *
+     * @return Bit i set if square i is occupied.
+     */
+    public long getOccupiedLo() {
+        return occupiedLo;
+    }
+
+    /**
+     * The occupied squares (queens and arrows) 64-99 as a bit mask.
+     *
+     * @return Bit i set if square 64 + i is occupied.
+     */
+    public long getOccupiedHi() {
+        return occupiedHi;
+    }
+
+
+    /**
+     * Retrieves the value stored on a square using the same encoding as the old 2D array.
+     *
+     * @param square The square index.
+     * @return 0 for empty, P1, P2 or ARROW.
+     */
+    public int getValue(int square) {
+        long bit = 1L << square;
+        if (square < 64) {
+            if ((occupiedLo & bit) == 0) return 0;
+            if ((player1Lo & bit) != 0) return P1;
+            if ((player2Lo & bit) != 0) return P2;
+        } else {
+            if ((occupiedHi & bit) == 0) return 0;
+            if ((player1Hi & bit) != 0) return P1;
+            if ((player2Hi & bit) != 0) return P2;
+        }
+        return ARROW;
+    }
+
+    /**
+     * @param piece P1, P2 or ARROW.
+     * @param square The square index.
+     * @return The Zobrist key of that piece on that square.
+     */
+    private static long zobristKey(int piece, int square) {
+        return ZOBRIST_KEYS[(piece - 1) * DEFAULT_BOARD_SIZE * DEFAULT_BOARD_SIZE + square];
+    }
+
+    /**
+     * Retrieves the Zobrist hash of the current position. It depends only on where the queens and arrows are,
+     * not on the order of the moves that put them there.
+     *
+     * @return The 64-bit position hash.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Writes a value onto a square, clearing whatever was there before.
+     *
+     * @param square The square index.
+     * @param value 0 for empty, P1, P2 or ARROW. Any other value is treated as an arrow, matching how the old array was read.
+     */
+    private void setValue(int square, int value) {
+        int previous = getValue(square);
+        if (previous == P1) player1Queens = replaceQueenSlot(player1Queens, square, EMPTY_SLOT);
+        else if (previous == P2) player2Queens = replaceQueenSlot(player2Queens, square, EMPTY_SLOT);
+        if (value == P1) player1Queens = replaceQueenSlot(player1Queens, EMPTY_SLOT, square);
+        else if (value == P2) player2Queens = replaceQueenSlot(player2Queens, EMPTY_SLOT, square);
+        if (previous != 0) hash ^= zobristKey(previous, square);
+        if (value != 0) hash ^= zobristKey(value == P1 || value == P2 ? value : ARROW, square);
+        long bit = 1L << square;
+        if (square < 64) {
+            player1Lo &= ~bit;
+            player2Lo &= ~bit;
+            arrowLo &= ~bit;
+            occupiedLo &= ~bit;
+            if (value == P1) player1Lo |= bit;
+            else if (value == P2) player2Lo |= bit;
+            else if (value != 0) arrowLo |= bit;
+            if (value != 0) occupiedLo |= bit;
+        } else {
+            player1Hi &= ~bit;
+            player2Hi &= ~bit;
+            arrowHi &= ~bit;
+            occupiedHi &= ~bit;
+            if (value == P1) player1Hi |= bit;
+            else if (value == P2) player2Hi |= bit;
+            else if (value != 0) arrowHi |= bit;
+            if (value != 0) occupiedHi |= bit;
+        }
+        refreshStuckQueens(square);
+    }
+
+    /**
+     * Recomputes the stuck flag of every queen whose neighbourhood contains the given square, plus a queen on the square itself.
+     * A change of occupancy on a square can only affect queens within one king step of it, so this is all the work a mutator has to do.
+     *
+     * @param square The square whose occupancy just changed.
+     */
+    private void refreshStuckQueens(int square) {
+        long areaLo = MoveGenerator.neighboursLo(square);
+        long areaHi = MoveGenerator.neighboursHi(square);
+        if (square < 64) areaLo |= 1L << square;
+        else areaHi |= 1L << square;
+        stuckLo &= ~areaLo;
+        stuckHi &= ~areaHi;
+        long queensLo = areaLo & (player1Lo | player2Lo);
+        long queensHi = areaHi & (player1Hi | player2Hi);
+        while (queensLo != 0) {
+            int queen = Long.numberOfTrailingZeros(queensLo);
+            queensLo &= queensLo - 1;
+            if (!MoveGenerator.hasMove(this, queen)) stuckLo |= 1L << queen;
+        }
+        while (queensHi != 0) {
+            int queen = 64 + Long.numberOfTrailingZeros(queensHi);
+            queensHi &= queensHi - 1;
+            if (!MoveGenerator.hasMove(this, queen)) stuckHi |= 1L << queen;
         }
     }
     // Initialize the board from an ArrayList<Integer>
 
     public List<Position> getQueenPositions(int playerNo) {
-        List<Position> queenPositions = new ArrayList<>();
-
-        for (int i = 0; i < DEFAULT_BOARD_SIZE; i++) {  //row
-            for (int j = 0; j < DEFAULT_BOARD_SIZE; j++) { //column
-                if((boardValues[i][j]) == playerNo){
-                    queenPositions.add(new Position(i,j));
-                }
+        List<Position> queenPositions = new ArrayList<>(MoveGenerator.QUEENS_PER_PLAYER);
+        int queens = getQueenIndex(playerNo);
+        for (int slot = 0; slot < MoveGenerator.QUEENS_PER_PLAYER; slot++) {
+            int square = queenSlot(queens, slot);
+            if (square != EMPTY_SLOT) {
+                queenPositions.add(new Position(square / DEFAULT_BOARD_SIZE, square % DEFAULT_BOARD_SIZE));
             }
         }
         return queenPositions;
     }
 
+    /**
+     * Writes the squares of a player's queens into the buffer without allocating, read from the queen index.
+     *
+     * @param playerNo The player (P1 or P2).
+     * @param squares The buffer receiving square indices; at most squares.length queens are written.
+     * @return The number of squares written.
+     */
+    public int getQueenSquares(int playerNo, int[] squares) {
+        int queens = getQueenIndex(playerNo);
+        int count = 0;
+        for (int slot = 0; slot < MoveGenerator.QUEENS_PER_PLAYER && count < squares.length; slot++) {
+            int square = queenSlot(queens, slot);
+            if (square != EMPTY_SLOT) {
+                squares[count++] = square;
+            }
+        }
+        return count;
+    }
+
+    private int getQueenIndex(int playerNo) {
+        return playerNo == P1 ? player1Queens : playerNo == P2 ? player2Queens : NO_QUEENS;
+    }
+
+    /**
+     * Reads one slot of a player's queen index, for allocation-free iteration inside the package.
+     *
+     * @param playerNo The player (P1 or P2).
+     * @param slot The slot, from 0 to MoveGenerator.QUEENS_PER_PLAYER - 1.
+     * @return The square of the queen in that slot, or -1 if the slot is free.
+     */
+    int getQueenSquare(int playerNo, int slot) {
+        int square = queenSlot(getQueenIndex(playerNo), slot);
+        return square == EMPTY_SLOT ? -1 : square;
+    }
+
+    /**
+     * Reads the incrementally maintained stuck-queen masks, so they can be checked against a full recomputation.
+     *
+     * @param hiWord true for squares 64-99, false for squares 0-63.
+     * @return The mask of queens with no free adjacent square.
+     */
+    long getStuckQueens(boolean hiWord) {
+        return hiWord ? stuckHi : stuckLo;
+    }
+
+    /**
+     * Overwrites this board with the state of another board, without allocating.
+     * Lets long-lived scratch boards (for example in PlayoutEngine) be reset instead of cloned.
+     *
+     * @param other The board to copy from.
+     */
+    public void copyFrom(Board other) {
+        this.player1Lo = other.player1Lo;
+        this.player1Hi = other.player1Hi;
+        this.player2Lo = other.player2Lo;
+        this.player2Hi = other.player2Hi;
+        this.arrowLo = other.arrowLo;
+        this.arrowHi = other.arrowHi;
+        this.occupiedLo = other.occupiedLo;
+        this.occupiedHi = other.occupiedHi;
+        this.stuckLo = other.stuckLo;
+        this.stuckHi = other.stuckHi;
+        this.hash = other.hash;
+        this.player1Queens = other.player1Queens;
+        this.player2Queens = other.player2Queens;
+    }
+
     /**
      * Clones this Board instance, creating a new instance with the same board state.
      *
      * @return A new Board instance with the same state as this board.
      */
     public Board clone() {
-        Board newBoard = new Board();
-        for (int i = 0; i < DEFAULT_BOARD_SIZE; i++) {
-            newBoard.boardValues[i] = this.boardValues[i].clone();
-        }
-        return newBoard;
+        return new Board(this);
     }
 
     /**
      * Computes all legal moves for a queen located at the specified coordinates.
+     * Kept for callers that work with Position objects; the search itself should use MoveGenerator with a primitive buffer.
      *
      * @param x The x-coordinate of the queen.
      * @param y The y-coordinate of the queen.
      * @return A list of Position objects representing all legal moves for the queen.
      */
     public List<Position> getLegalMoves(int x, int y) {
-        List<Position> legalMoves = new ArrayList<>();
-
-        // Directions the queen can move, ordered as N, E, S, W, NE, SE, SW, NW
-        int[] directionsX = {0, 1, 0, -1, 1, 1, -1, -1}; // X changes for E, W, and diagonals
-        int[] directionsY = {1, 0, -1, 0, 1, -1, -1, 1}; // Y changes for N, S, and diagonals
-
-        for (int i = 0; i < directionsX.length; i++) {
-            // currentX and currentY represent the x, y coordinate pairs of the current queen being observed
-            int currentX = x + directionsX[i]; // By adding the direction vector, we are effectively checking if we can make that move
-            int currentY = y + directionsY[i];
-
-            // We need to keep moving in this direction until we hit the edge of the board or an occupied tile (either burned or an opponent is already there)
-            // By checking if the next position is a 0, we check if it is unoccupied
-            while (currentX >= 0 && currentX < DEFAULT_BOARD_SIZE && currentY >= 0 && currentY < DEFAULT_BOARD_SIZE && this.boardValues[currentX][currentY] == 0) {
-                legalMoves.add(new Position(currentX, currentY));
-                currentX += directionsX[i];
-                currentY += directionsY[i];
-            }
+        int[] squares = new int[MoveGenerator.MAX_MOVES_PER_SQUARE];
+        int count = MoveGenerator.generate(this, square(x, y), squares, 0);
+        List<Position> legalMoves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            legalMoves.add(new Position(squares[i] / DEFAULT_BOARD_SIZE, squares[i] % DEFAULT_BOARD_SIZE));
         }
         return legalMoves;
     }
@@ -132,82 +391,173 @@ public class Board {
      */
     public void performMove(int player, Position currentPos, Position newPos) {
         // Remove the piece from its current position.
-        this.boardValues[currentPos.getX()][currentPos.getY()] = 0;
+        setValue(square(currentPos.getX(), currentPos.getY()), 0);
 
-        // Place the piece at the new position.
-        this.boardValues[newPos.getX()][newPos.getY()] = player;
+        // Place the piece at the new position. setValue keeps the queen index in step.
+        setValue(square(newPos.getX(), newPos.getY()), player);
+    }
 
-        // Update the position list.
-        if (player == P1) {
-            player1Positions.remove(currentPos);
-            player1Positions.add(newPos);
+    /**
+     * Moves whichever queen stands on one square to another square, updating the masks in place.
+     * This is the first half of a move; the caller is responsible for both squares being valid (a queen on from, to empty).
+     *
+     * @param from The square the queen is on.
+     * @param to The empty square the queen moves to.
+     */
+    public void moveQueen(int from, int to) {
+        long fromBit = 1L << from;
+        long toBit = 1L << to;
+        boolean isPlayer1 = from < 64 ? (player1Lo & fromBit) != 0 : (player1Hi & fromBit) != 0;
+        if (from < 64) {
+            if (isPlayer1) player1Lo ^= fromBit; else player2Lo ^= fromBit;
+            occupiedLo ^= fromBit;
         } else {
-            player2Positions.remove(currentPos);
-            player2Positions.add(newPos);
+            if (isPlayer1) player1Hi ^= fromBit; else player2Hi ^= fromBit;
+            occupiedHi ^= fromBit;
         }
+        if (to < 64) {
+            if (isPlayer1) player1Lo |= toBit; else player2Lo |= toBit;
+            occupiedLo |= toBit;
+        } else {
+            if (isPlayer1) player1Hi |= toBit; else player2Hi |= toBit;
+            occupiedHi |= toBit;
+        }
+        if (isPlayer1) player1Queens = replaceQueenSlot(player1Queens, from, to);
+        else player2Queens = replaceQueenSlot(player2Queens, from, to);
+        int piece = isPlayer1 ? P1 : P2;
+        hash ^= zobristKey(piece, from) ^ zobristKey(piece, to);
+        refreshStuckQueens(from);
+        refreshStuckQueens(to);
+    }
+
+    /**
+     * Burns an empty square with an arrow. This is the second half of a move.
+     *
+     * @param square The empty square to burn.
+     */
+    public void placeArrow(int square) {
+        hash ^= zobristKey(ARROW, square);
+        long bit = 1L << square;
+        if (square < 64) {
+            arrowLo |= bit;
+            occupiedLo |= bit;
+        } else {
+            arrowHi |= bit;
+            occupiedHi |= bit;
+        }
+        refreshStuckQueens(square);
+    }
+
+    /**
+     * Removes an arrow from a square, undoing placeArrow.
+     *
+     * @param square The square holding the arrow.
+     */
+    public void removeArrow(int square) {
+        hash ^= zobristKey(ARROW, square);
+        long bit = ~(1L << square);
+        if (square < 64) {
+            arrowLo &= bit;
+            occupiedLo &= bit;
+        } else {
+            arrowHi &= bit;
+            occupiedHi &= bit;
+        }
+        refreshStuckQueens(square);
+    }
+
+    /**
+     * Applies an encoded move (see Move) to this board in place.
+     *
+     * @param move The encoded move; the queen on its from square moves to its to square and then shoots the arrow.
+     */
+    public void makeMove(int move) {
+        moveQueen(Move.from(move), Move.to(move));
+        placeArrow(Move.arrow(move));
+    }
+
+    /**
+     * Reverts a move previously applied with makeMove, restoring the board exactly.
+     * The arrow is removed first since it may have been shot back onto the square the queen came from.
+     *
+     * @param move The encoded move that was last applied.
+     */
+    public void unmakeMove(int move) {
+        removeArrow(Move.arrow(move));
+        moveQueen(Move.to(move), Move.from(move));
+    }
+
+    /**
+     * Writes every legal move of a player into the buffer as encoded moves.
+     *
+     * @param playerNo The player (P1 or P2) to generate moves for.
+     * @param moves The buffer receiving moves; MoveGenerator.MAX_MOVES is always large enough.
+     * @return The number of moves written.
+     */
+    public int getAllPossibleMoves(int playerNo, int[] moves) {
+        return MoveGenerator.generateMoves(this, playerNo, moves);
     }
 
     /**
      * Checks the current status of the game board.
+     * Runs in constant time using the incrementally maintained stuck-queen masks, and has no side effects.
      *
      * @return An integer representing the game status (IN_PROGRESS, DRAW, P1 win, or P2 win).
      */
-// Make sure checkStatus is an instance method if it's going to call other instance methods like getLegalMoves
     public int checkStatus() {
-        boolean blackHasMoves = false;
-        boolean whiteHasMoves = false;
-
-        // Use this to call instance methods
-        for (int x = 0; x < DEFAULT_BOARD_SIZE; x++) {
-            for (int y = 0; y < DEFAULT_BOARD_SIZE; y++) {
-                int piece = this.boardValues[x][y];
-                if (piece == P1 || piece == P2) {
-                    List<Position> legalMoves = this.getLegalMoves(x, y);
-                    //System.out.println("Debug: queen " +piece+ "at position "+x+","+y+" has moves " + legalMoves);
-                    if (!legalMoves.isEmpty()) {
-                        if (piece == P1) blackHasMoves = true;
-                        else whiteHasMoves = true;
-                    }
-                }
-            }
-        }
+        // A queen has a legal move exactly when it has a free adjacent square, which the stuck masks already track.
+        boolean blackHasMoves = (player1Lo & ~stuckLo) != 0 || (player1Hi & ~stuckHi) != 0;
+        boolean whiteHasMoves = (player2Lo & ~stuckLo) != 0 || (player2Hi & ~stuckHi) != 0;
 
         if (blackHasMoves && !whiteHasMoves) {
-            //System.out.println("Debug: Black wins");
-            //printBoard(this.getBoard());
-            gamesPlayed++;
             return P1; // Black wins
         }
         else if (!blackHasMoves && whiteHasMoves) {
-            ///System.out.println("Debug: White wins");
-            //printBoard(this.getBoard());
-            gamesPlayed++;
             return P2; // White wins
-        } else if(!blackHasMoves && !whiteHasMoves){
-            //System.out.println("Debug: White & Black don't have moves");
-            gamesPlayed++;
+        } else if(!blackHasMoves && !whiteHasMoves) {
             return DRAW;
         }
-        else return IN_PROGRESS; // Game is still in progress or it's a draw
+        else return IN_PROGRESS; // Both sides can still move, so the game is in progress
     }
 
 
 
     /**
      * Retrieves the current state of the board.
+     * The masks are converted into a fresh 2D array on every call, so changes to the returned array do not affect the board.
      *
-     * @return The 2D array representing the board state.
+     * @return The 2D array representing the board state; 0 for empty, 1 for player 1, 2 for player 2 and 3 for an arrow.
      */
     // Method to return the current board state
-    public int[][] getBoard() { return this.boardValues; }
+    public int[][] getBoard() {
+        int[][] boardValues = new int[DEFAULT_BOARD_SIZE][DEFAULT_BOARD_SIZE];
+        for (int x = 0; x < DEFAULT_BOARD_SIZE; x++) {
+            for (int y = 0; y < DEFAULT_BOARD_SIZE; y++) {
+                boardValues[x][y] = getValue(square(x, y));
+            }
+        }
+        return boardValues;
+    }
 
     /**
-     * Sets the board state. Use with caution to avoid corrupting the game state.
+     * Sets the board state by converting a 2D array into the masks. Use with caution to avoid corrupting the game state.
+     * The array is only read, never retained.
      *
      * @param newBoardValues The new board state to set.
      */
     public void setBoard(int[][] newBoardValues) {
-        this.boardValues = newBoardValues;
+        player1Lo = player1Hi = 0L;
+        player2Lo = player2Hi = 0L;
+        arrowLo = arrowHi = 0L;
+        occupiedLo = occupiedHi = 0L;
+        stuckLo = stuckHi = 0L;
+        hash = 0L;
+        player1Queens = player2Queens = NO_QUEENS;
+        for (int x = 0; x < DEFAULT_BOARD_SIZE; x++) {
+            for (int y = 0; y < DEFAULT_BOARD_SIZE; y++) {
+                setValue(square(x, y), newBoardValues[x][y]);
+            }
+        }
     }
 
     /**
@@ -239,37 +589,19 @@ public class Board {
      * @return A list of Board objects representing all possible next states.
      */
     public List<Board> getAllPossibleStates(int currentPlayer) {
-        List<Board> possibleStates = new ArrayList<>();
-        // For each queen, generate states after moving the queen and shooting an arrow.
-        for (Position queenPos : getQueenPositions(currentPlayer)) {
-            List<Position> queenMoves = getLegalMoves(queenPos.getX(), queenPos.getY());
-            for (Position queenMove : queenMoves) {
-                Board stateAfterQueenMove = this.clone();
-                stateAfterQueenMove.performMove(currentPlayer, queenPos, queenMove);
-                List<Position> arrowShots = stateAfterQueenMove.getLegalMoves(queenMove.getX(), queenMove.getY());
-                for (Position arrowShot : arrowShots) {
-                    Board finalState = stateAfterQueenMove.clone();
-                    finalState.shootArrow(arrowShot);
-                    possibleStates.add(finalState);
-                }
-            }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = getAllPossibleMoves(currentPlayer, moves);
+        List<Board> possibleStates = new ArrayList<>(count);
+        // Walk the moves on this board with make/unmake so that only the final states are copied.
+        for (int i = 0; i < count; i++) {
+            makeMove(moves[i]);
+            possibleStates.add(this.clone());
+            unmakeMove(moves[i]);
         }
         return possibleStates;
     }
 
 
-    /**
-     * Copies the board state from one 2D array to another.
-     *
-     * @param source The source 2D array.
-     * @param destination The destination 2D array.
-     */
-    private void copyBoardState(int[][] source, int[][] destination) {
-        for (int i = 0; i < source.length; i++) {
-            System.arraycopy(source[i], 0, destination[i], 0, source[i].length);
-        }
-    }
-
     public static void printBoard(int [][] printBoard) {
         System.out.println();
         for (int i = 9; i > -1; i--) { // Iterate through each row
@@ -285,41 +617,15 @@ public class Board {
         Board.printBoard(board.getBoard());
     }
 
+    /**
+     * Plays one random move (queen move and arrow) for the given player on this board.
+     * Delegates to the calling thread's PlayoutEngine, so no Random or list is created per call.
+     *
+     * @param playerNo The player to move.
+     */
     public void randomPlay(int playerNo) {
         //randomPlays++;
-        //System.out.println("Debug: Activate randomPlay & Print Board Values");
-        //System.out.println(Arrays.deepToString(boardValues));
-        Random random = new Random();
-        // Determine the current player's positions
-        List<Position> playerPositions = getQueenPositions(playerNo);
-        if (!playerPositions.isEmpty()) {
-            // Choose a random queen from the current player's positions
-            Position piecePosition = playerPositions.get(random.nextInt(playerPositions.size()));
-            // Find all legal moves for that queen
-            List<Position> legalMoves = getLegalMoves(piecePosition.getX(), piecePosition.getY());
-
-            if (!legalMoves.isEmpty()) {
-                // Select one of the legal moves at random
-                Position selectedMove = legalMoves.get(random.nextInt(legalMoves.size()));
-                //System.out.println("Debug: Print Board Values before performMove");
-                //System.out.println(Arrays.deepToString(boardValues));
-                performMove(playerNo, piecePosition, selectedMove);
-                //System.out.println("Debug: Print Board Values after performMove");
-                //System.out.println(Arrays.deepToString(boardValues));
-
-                // After moving, find all possible positions to shoot the arrow
-                List<Position> arrowShots = getLegalMoves(selectedMove.getX(), selectedMove.getY());
-                if (!arrowShots.isEmpty()) {
-                    // Select a random position for the arrow
-                    Position arrowPosition = arrowShots.get(random.nextInt(arrowShots.size()));
-                    //System.out.println("Debug: Print Board Values before shootArrow");
-                    //System.out.println(Arrays.deepToString(boardValues));
-                    this.boardValues[arrowPosition.getX()][arrowPosition.getY()] = ARROW;
-                    //System.out.println("Debug: Print Board Values after shootArrow");
-                    //System.out.println(Arrays.deepToString(boardValues));
-                }
-            }
-        }
+        PlayoutEngine.get().randomPly(this, playerNo);
     }
 
 
@@ -330,7 +636,7 @@ public class Board {
         if(arrowPosition.getX() >= 0 && arrowPosition.getX() < DEFAULT_BOARD_SIZE &&
                 arrowPosition.getY() >= 0 && arrowPosition.getY() < DEFAULT_BOARD_SIZE) {
             // Mark the position with a 3 to indicate an arrow
-            boardValues[arrowPosition.getX()][arrowPosition.getY()] = ARROW;
+            setValue(square(arrowPosition.getX(), arrowPosition.getY()), ARROW);
             //System.out.println("arrow shot at " + arrowPosition.getX() + " and " + arrowPosition.getY());
         } else {
             System.out.println("Arrow position is out of bounds.");
@@ -348,9 +654,11 @@ public class Board {
         // Loop over the board to identify the old queen position, new queen position, and arrow position.
         for (int x = 0; x < DEFAULT_BOARD_SIZE; x++) {
             for (int y = 0; y < DEFAULT_BOARD_SIZE; y++) {
-                if (currentBoard.boardValues[x][y] != bestMoveBoard.boardValues[x][y]) {
-                    if (currentBoard.boardValues[x][y] != 0) {
-                        if(bestMoveBoard.boardValues[x][y] == 3){
+                int currentValue = currentBoard.getValue(square(x, y));
+                int bestValue = bestMoveBoard.getValue(square(x, y));
+                if (currentValue != bestValue) {
+                    if (currentValue != 0) {
+                        if(bestValue == 3){
                             oldQueenX = x + 1;
                             oldQueenY = y + 1;
                             arrowX = x + 1;
@@ -360,11 +668,11 @@ public class Board {
                             oldQueenX = x + 1;
                             oldQueenY = y + 1;
                         }
-                    } else if (currentBoard.boardValues[x][y] == 0 && bestMoveBoard.boardValues[x][y] != 0 && bestMoveBoard.boardValues[x][y] != ARROW) {
+                    } else if (currentValue == 0 && bestValue != 0 && bestValue != ARROW) {
                         // The queen has moved to this position.
                         newQueenX = x + 1;
                         newQueenY = y + 1;
-                    } else if (bestMoveBoard.boardValues[x][y] == ARROW) {
+                    } else if (bestValue == ARROW) {
                         // The arrow has been shot to this position.
                         arrowX = x + 1;
                         arrowY = y + 1;
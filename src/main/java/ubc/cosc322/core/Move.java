@@ -0,0 +1,100 @@
+package ubc.cosc322.core;
+
+/**
+ * Encodes a complete Amazons move (queen from, queen to and arrow) into a single int.
+ * Each part is a square index (x * DEFAULT_BOARD_SIZE + y) stored in 7 bits: from in bits 0-6, to in bits 7-13 and the arrow in bits 14-20.
+ * Moves are plain ints so they can be stored in primitive buffers and applied with Board.makeMove/unmakeMove without creating objects.
+ */
+public final class Move {
+    private static final int SQUARE_BITS = 7;
+    private static final int SQUARE_MASK = (1 << SQUARE_BITS) - 1;
+    private static final int TO_SHIFT = SQUARE_BITS;
+    private static final int ARROW_SHIFT = 2 * SQUARE_BITS;
+
+    /**
+     * A value no encoded move can take, used to mark "no move".
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The arrow field of a queen step, i.e. the first half of a move whose arrow has not been chosen yet.
+     */
+    private static final int NO_ARROW = SQUARE_MASK;
+
+    private Move() {
+    }
+
+    /**
+     * Packs a move into an int.
+     *
+     * @param from The square the queen moves from.
+     * @param to The square the queen moves to.
+     * @param arrow The square the arrow is shot to.
+     * @return The encoded move.
+     */
+    public static int encode(int from, int to, int arrow) {
+        return from | (to << TO_SHIFT) | (arrow << ARROW_SHIFT);
+    }
+
+    /**
+     * Packs the first half of a move, the queen step, leaving the arrow undecided.
+     * Used by the two-stage search tree, where the queen step and the arrow are separate nodes.
+     *
+     * @param from The square the queen moves from.
+     * @param to The square the queen moves to.
+     * @return The encoded queen step.
+     */
+    public static int encodeQueenStep(int from, int to) {
+        return encode(from, to, NO_ARROW);
+    }
+
+    /**
+     * @param move An encoded move or queen step.
+     * @return true if the move includes an arrow, false if it is a queen step only.
+     */
+    public static boolean hasArrow(int move) {
+        return arrow(move) != NO_ARROW;
+    }
+
+    /**
+     * @param move An encoded move.
+     * @return The square the queen moves from.
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * @param move An encoded move.
+     * @return The square the queen moves to.
+     */
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    /**
+     * @param move An encoded move.
+     * @return The square the arrow is shot to.
+     */
+    public static int arrow(int move) {
+        return (move >>> ARROW_SHIFT) & SQUARE_MASK;
+    }
+
+    /**
+     * Returns a readable representation of a move using (x, y) coordinates, useful for debugging and logging.
+     *
+     * @param move An encoded move.
+     * @return A string in the format "(x, y) -> (x, y) / (x, y)", without the arrow part for a queen step.
+     */
+    public static String toString(int move) {
+        if (move == NONE) {
+            return "none";
+        }
+        String queenStep = squareToString(from(move)) + " -> " + squareToString(to(move));
+        return hasArrow(move) ? queenStep + " / " + squareToString(arrow(move)) : queenStep;
+    }
+
+    private static String squareToString(int square) {
+        return "(" + square / Board.DEFAULT_BOARD_SIZE + ", " + square % Board.DEFAULT_BOARD_SIZE + ")";
+    }
+}
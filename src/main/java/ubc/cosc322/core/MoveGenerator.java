@@ -0,0 +1,300 @@
+package ubc.cosc322.core;
+
+/**
+ * Generates queen moves and arrow shots for the Game of the Amazons from precomputed ray tables.
+ * Queens and arrows travel along the same eight rays, so one generator serves both: queen moves are generated from the
+ * queen's square, and arrow shots from the square the queen landed on once the move has been applied to the board.
+ *
+ * For every square and direction the tables hold the ordered list of squares along the ray and the ray as a 128-bit
+ * mask. The first occupied square on a ray (the blocker) is found with a single bit scan over the board's occupancy,
+ * and the reachable prefix of the ray is then copied straight into a caller-supplied buffer of square indices.
+ */
+public final class MoveGenerator {
+    // Directions ordered as N, E, S, W, NE, SE, SW, NW, matching the order Board.getLegalMoves has always used.
+    private static final int[] DIRECTIONS_X = {0, 1, 0, -1, 1, 1, -1, -1};
+    private static final int[] DIRECTIONS_Y = {1, 0, -1, 0, 1, -1, -1, 1};
+    public static final int DIRECTIONS = 8;
+    private static final int SQUARES = Board.DEFAULT_BOARD_SIZE * Board.DEFAULT_BOARD_SIZE;
+
+    /**
+     * The most squares a single queen can ever reach on an empty board; a buffer of this size always fits one call to generate().
+     */
+    public static final int MAX_MOVES_PER_SQUARE;
+
+    /**
+     * The number of queens each player starts with.
+     */
+    public static final int QUEENS_PER_PLAYER = 4;
+
+    /**
+     * An upper bound on the number of complete moves (queen move plus arrow) in any position; a buffer of this size always fits generateMoves().
+     */
+    public static final int MAX_MOVES;
+
+    // Ray tables, indexed by square * DIRECTIONS + direction.
+    private static final int[] RAY_SQUARES; // Flat list of ray squares, nearest first
+    private static final int[] RAY_OFFSET = new int[SQUARES * DIRECTIONS]; // Start of each ray in RAY_SQUARES
+    private static final int[] RAY_LENGTH = new int[SQUARES * DIRECTIONS]; // Squares on each ray up to the edge
+    private static final long[] RAY_MASK_LO = new long[SQUARES * DIRECTIONS];
+    private static final long[] RAY_MASK_HI = new long[SQUARES * DIRECTIONS];
+    // King-move neighbourhood of each square as a 128-bit mask, used for "can anything move from here" checks.
+    private static final long[] NEIGHBOURS_LO = new long[SQUARES];
+    private static final long[] NEIGHBOURS_HI = new long[SQUARES];
+    // Square index delta of one step in each direction. Positive steps walk up the masks, negative steps walk down.
+    private static final int[] STEP = new int[DIRECTIONS];
+
+    static {
+        int total = 0;
+        int maxPerSquare = 0;
+        int[] squares = new int[SQUARES * DIRECTIONS * (Board.DEFAULT_BOARD_SIZE - 1)];
+        for (int d = 0; d < DIRECTIONS; d++) {
+            STEP[d] = DIRECTIONS_X[d] * Board.DEFAULT_BOARD_SIZE + DIRECTIONS_Y[d];
+        }
+        for (int x = 0; x < Board.DEFAULT_BOARD_SIZE; x++) {
+            for (int y = 0; y < Board.DEFAULT_BOARD_SIZE; y++) {
+                int square = Board.square(x, y);
+                int reachable = 0;
+                for (int d = 0; d < DIRECTIONS; d++) {
+                    int index = square * DIRECTIONS + d;
+                    RAY_OFFSET[index] = total;
+                    int currentX = x + DIRECTIONS_X[d];
+                    int currentY = y + DIRECTIONS_Y[d];
+                    while (currentX >= 0 && currentX < Board.DEFAULT_BOARD_SIZE && currentY >= 0 && currentY < Board.DEFAULT_BOARD_SIZE) {
+                        int target = Board.square(currentX, currentY);
+                        squares[total++] = target;
+                        if (target < 64) RAY_MASK_LO[index] |= 1L << target;
+                        else RAY_MASK_HI[index] |= 1L << target;
+                        if (total - RAY_OFFSET[index] == 1) {
+                            if (target < 64) NEIGHBOURS_LO[square] |= 1L << target;
+                            else NEIGHBOURS_HI[square] |= 1L << target;
+                        }
+                        currentX += DIRECTIONS_X[d];
+                        currentY += DIRECTIONS_Y[d];
+                    }
+                    RAY_LENGTH[index] = total - RAY_OFFSET[index];
+                    reachable += RAY_LENGTH[index];
+                }
+                maxPerSquare = Math.max(maxPerSquare, reachable);
+            }
+        }
+        RAY_SQUARES = new int[total];
+        System.arraycopy(squares, 0, RAY_SQUARES, 0, total);
+        MAX_MOVES_PER_SQUARE = maxPerSquare;
+        MAX_MOVES = QUEENS_PER_PLAYER * MAX_MOVES_PER_SQUARE * MAX_MOVES_PER_SQUARE;
+    }
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Counts the free squares on a ray before the first blocker, using a bit scan over the occupancy masks.
+     *
+     * @param square The square the ray starts from.
+     * @param direction The direction of the ray.
+     * @param occupiedLo The occupancy of squares 0-63.
+     * @param occupiedHi The occupancy of squares 64-99.
+     * @return The number of reachable squares on the ray.
+     */
+    private static int reach(int square, int direction, long occupiedLo, long occupiedHi) {
+        int index = square * DIRECTIONS + direction;
+        long lo = RAY_MASK_LO[index] & occupiedLo;
+        long hi = RAY_MASK_HI[index] & occupiedHi;
+        int blocker;
+        if (STEP[direction] > 0) {
+            // Walking up the board: the nearest blocker is the lowest set bit.
+            if (lo != 0) blocker = Long.numberOfTrailingZeros(lo);
+            else if (hi != 0) blocker = 64 + Long.numberOfTrailingZeros(hi);
+            else return RAY_LENGTH[index];
+        } else {
+            // Walking down the board: the nearest blocker is the highest set bit.
+            if (hi != 0) blocker = 127 - Long.numberOfLeadingZeros(hi);
+            else if (lo != 0) blocker = 63 - Long.numberOfLeadingZeros(lo);
+            else return RAY_LENGTH[index];
+        }
+        return (blocker - square) / STEP[direction] - 1;
+    }
+
+    /**
+     * Writes every square reachable from the given square into the buffer, in N, E, S, W, NE, SE, SW, NW order.
+     * Used for queen moves from a queen's square and for arrow shots from the square a queen has just moved to.
+     *
+     * @param board The board whose occupancy stops the rays.
+     * @param square The square to generate from.
+     * @param buffer The buffer receiving square indices; needs MAX_MOVES_PER_SQUARE free slots after offset.
+     * @param offset The index in the buffer to start writing at.
+     * @return The number of squares written.
+     */
+    public static int generate(Board board, int square, int[] buffer, int offset) {
+        long occupiedLo = board.getOccupiedLo();
+        long occupiedHi = board.getOccupiedHi();
+        int count = 0;
+        for (int d = 0; d < DIRECTIONS; d++) {
+            int length = reach(square, d, occupiedLo, occupiedHi);
+            if (length > 0) {
+                System.arraycopy(RAY_SQUARES, RAY_OFFSET[square * DIRECTIONS + d], buffer, offset + count, length);
+                count += length;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes every complete move of a player (queen move followed by an arrow) into the buffer as encoded moves.
+     * The arrow rays of each queen move are traced on a local copy of the occupancy with the queen lifted from its square
+     * and placed on its destination, so the board itself is only read and may be shared with other threads during the call.
+     *
+     * @param board The board to generate moves on.
+     * @param playerNo The player (Board.P1 or Board.P2) to move.
+     * @param moves The buffer receiving encoded moves; needs MAX_MOVES slots.
+     * @return The number of moves written.
+     */
+    public static int generateMoves(Board board, int playerNo, int[] moves) {
+        int count = 0;
+        for (int slot = 0; slot < QUEENS_PER_PLAYER; slot++) {
+            int from = board.getQueenSquare(playerNo, slot);
+            if (from >= 0) {
+                count = generateQueenMoves(board, from, moves, count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes every queen step of a player (the queen half of a move, without the arrow) into the buffer as encoded moves.
+     * Used by the two-stage search tree, which chooses the arrow in a separate node.
+     *
+     * @param board The board to generate queen steps on.
+     * @param playerNo The player (Board.P1 or Board.P2) to move.
+     * @param moves The buffer receiving encoded queen steps; needs QUEENS_PER_PLAYER * MAX_MOVES_PER_SQUARE slots.
+     * @return The number of queen steps written.
+     */
+    public static int generateQueenSteps(Board board, int playerNo, int[] moves) {
+        long occupiedLo = board.getOccupiedLo();
+        long occupiedHi = board.getOccupiedHi();
+        int count = 0;
+        for (int slot = 0; slot < QUEENS_PER_PLAYER; slot++) {
+            int from = board.getQueenSquare(playerNo, slot);
+            if (from < 0) {
+                continue;
+            }
+            for (int d = 0; d < DIRECTIONS; d++) {
+                int index = from * DIRECTIONS + d;
+                int length = reach(from, d, occupiedLo, occupiedHi);
+                for (int i = 0; i < length; i++) {
+                    moves[count++] = Move.encodeQueenStep(from, RAY_SQUARES[RAY_OFFSET[index] + i]);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int generateQueenMoves(Board board, int from, int[] moves, int count) {
+        long boardLo = board.getOccupiedLo();
+        long boardHi = board.getOccupiedHi();
+        // The arrow is shot after the queen has left its square, so the arrow rays see it empty.
+        long liftedLo = from < 64 ? boardLo & ~(1L << from) : boardLo;
+        long liftedHi = from < 64 ? boardHi : boardHi & ~(1L << from);
+        for (int d = 0; d < DIRECTIONS; d++) {
+            int index = from * DIRECTIONS + d;
+            int length = reach(from, d, boardLo, boardHi);
+            for (int i = 0; i < length; i++) {
+                int to = RAY_SQUARES[RAY_OFFSET[index] + i];
+                long occupiedLo = to < 64 ? liftedLo | (1L << to) : liftedLo;
+                long occupiedHi = to < 64 ? liftedHi : liftedHi | (1L << to);
+                for (int a = 0; a < DIRECTIONS; a++) {
+                    int arrowIndex = to * DIRECTIONS + a;
+                    int arrowLength = reach(to, a, occupiedLo, occupiedHi);
+                    for (int j = 0; j < arrowLength; j++) {
+                        moves[count++] = Move.encode(from, to, RAY_SQUARES[RAY_OFFSET[arrowIndex] + j]);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Computes the squares reachable from the given square as a 128-bit mask, for callers that work on sets of squares
+     * (such as distance floods) rather than on lists of moves. Each ray is cut at its blocker with one mask operation.
+     *
+     * @param board The board whose occupancy stops the rays.
+     * @param square The square to start from.
+     * @param mask Receives squares 0-63 in mask[0] and squares 64-99 in mask[1], as bits 0-35.
+     */
+    public static void reachable(Board board, int square, long[] mask) {
+        long occupiedLo = board.getOccupiedLo();
+        long occupiedHi = board.getOccupiedHi();
+        long reachableLo = 0;
+        long reachableHi = 0;
+        for (int d = 0; d < DIRECTIONS; d++) {
+            int index = square * DIRECTIONS + d;
+            long rayLo = RAY_MASK_LO[index];
+            long rayHi = RAY_MASK_HI[index];
+            long lo = rayLo & occupiedLo;
+            long hi = rayHi & occupiedHi;
+            if (STEP[d] > 0) {
+                // Walking up the board: keep the ray below its lowest blocker.
+                if (lo != 0) {
+                    reachableLo |= rayLo & (Long.lowestOneBit(lo) - 1);
+                } else {
+                    reachableLo |= rayLo;
+                    reachableHi |= hi != 0 ? rayHi & (Long.lowestOneBit(hi) - 1) : rayHi;
+                }
+            } else {
+                // Walking down the board: keep the ray above its highest blocker.
+                if (hi != 0) {
+                    reachableHi |= rayHi & (-2L << (63 - Long.numberOfLeadingZeros(hi)));
+                } else {
+                    reachableHi |= rayHi;
+                    reachableLo |= lo != 0 ? rayLo & (-2L << (63 - Long.numberOfLeadingZeros(lo))) : rayLo;
+                }
+            }
+        }
+        mask[0] = reachableLo;
+        mask[1] = reachableHi;
+    }
+
+    /**
+     * Counts the squares reachable from the given square without writing them anywhere.
+     *
+     * @param board The board whose occupancy stops the rays.
+     * @param square The square to count from.
+     * @return The number of reachable squares.
+     */
+    public static int count(Board board, int square) {
+        long occupiedLo = board.getOccupiedLo();
+        long occupiedHi = board.getOccupiedHi();
+        int count = 0;
+        for (int d = 0; d < DIRECTIONS; d++) {
+            count += reach(square, d, occupiedLo, occupiedHi);
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether anything can move from the given square, i.e. whether any adjacent square is free.
+     *
+     * @param board The board to check.
+     * @param square The square to check from.
+     * @return true if at least one square is reachable.
+     */
+    public static boolean hasMove(Board board, int square) {
+        return ((NEIGHBOURS_LO[square] & ~board.getOccupiedLo()) | (NEIGHBOURS_HI[square] & ~board.getOccupiedHi())) != 0;
+    }
+
+    /**
+     * @param square A square index.
+     * @return The squares adjacent to it (king moves) among squares 0-63.
+     */
+    public static long neighboursLo(int square) {
+        return NEIGHBOURS_LO[square];
+    }
+
+    /**
+     * @param square A square index.
+     * @return The squares adjacent to it (king moves) among squares 64-99, as bits 0-35.
+     */
+    public static long neighboursHi(int square) {
+        return NEIGHBOURS_HI[square];
+    }
+}
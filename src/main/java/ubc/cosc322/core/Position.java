@@ -44,6 +44,29 @@ public class Position {
         return y;
     }
 
+    /**
+     * Two positions are equal when they refer to the same square, so positions can be looked up and removed from collections.
+     *
+     * @param o The object to compare with.
+     * @return true if o is a Position with the same coordinates.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Position position = (Position) o;
+        return x == position.x && y == position.y;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * x + y;
+    }
+
     /**
      * Returns a string representation of the position.
      * This method is useful for debugging and logging purposes, providing a quick and readable representation of the position.
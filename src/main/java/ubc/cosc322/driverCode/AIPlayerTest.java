@@ -6,6 +6,7 @@ import com.beust.ah.A;
 import ubc.cosc322.algorithms.MonteCarloTreeSearch;
 import ubc.cosc322.algorithms.Node;
 import ubc.cosc322.core.Board;
+import ubc.cosc322.core.Move;
 import ubc.cosc322.core.actionFactory.Action;
 import ygraph.ai.smartfox.games.GameMessage;
 import ygraph.ai.smartfox.games.BaseGameGUI;
@@ -156,6 +157,7 @@ public class AIPlayerTest extends GamePlayer {
      * @param msgDetails Details of the game action move message.
      */
     private void handleGameActionMove(Map<String, Object> msgDetails) {
+        mcts.stopPondering(); // The reply is in, so the workers are needed for our own move
         ArrayList<Integer> currentPosition = (ArrayList<Integer>) msgDetails.get(AmazonsGameMessage.QUEEN_POS_CURR);
         ArrayList<Integer> nextPosition = (ArrayList<Integer>) msgDetails.get(AmazonsGameMessage.QUEEN_POS_NEXT);
         ArrayList<Integer> arrowPosition = (ArrayList<Integer>) msgDetails.get(AmazonsGameMessage.ARROW_POS);
@@ -166,6 +168,8 @@ public class AIPlayerTest extends GamePlayer {
 
         gameGui.updateGameState(currentPosition, nextPosition, arrowPosition);
         updateMainBoard(currentPosition, nextPosition, arrowPosition);
+        // Let the search keep the part of its tree that follows the opponent's reply.
+        mcts.applyMove(Move.encode(toSquare(currentPosition), toSquare(nextPosition), toSquare(arrowPosition)));
         System.out.println("Board After Opponent's Move");
         printMainBoard();
         generateAndSendMove();
@@ -215,6 +219,8 @@ public class AIPlayerTest extends GamePlayer {
             System.out.println("moves sent to server");
             System.out.println("Board After Our Move");
             printMainBoard();
+            // Keep searching on the opponent's time; the part of the tree under their reply is reused for our next move.
+            mcts.startPondering();
         }
 
     }
@@ -229,6 +235,16 @@ public class AIPlayerTest extends GamePlayer {
         return new ArrayList<>(Arrays.asList(random.nextInt(10) + 1, random.nextInt(10) + 1));
     }
 
+    /**
+     * Converts a 1-based (x, y) position from a server message to a Board square index.
+     *
+     * @param position The position as sent by the server.
+     * @return The square index.
+     */
+    private static int toSquare(ArrayList<Integer> position) {
+        return Board.square(position.get(0) - 1, position.get(1) - 1);
+    }
+
     public static void setMainBoard(ArrayList<Integer> gameBoardState) {
         // Initialize a new array to hold the updated board state
         int[][] array = new int[10][10];
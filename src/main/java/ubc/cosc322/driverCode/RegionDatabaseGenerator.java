@@ -0,0 +1,26 @@
+package ubc.cosc322.driverCode;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import ubc.cosc322.algorithms.RegionDatabase;
+
+/**
+ * Writes the region database the engine maps at startup (see RegionDatabase). Run it once from the directory the
+ * player is started in; the engine works without the file, only slower in the endgame.
+ */
+public class RegionDatabaseGenerator {
+    /**
+     * The main method
+     * @param args the largest region size (default and at most RegionDatabase.MAX_SQUARES, so the engine finds every
+     *             region it can look up) and the output file (default RegionDatabase.DEFAULT_FILE)
+     */
+    public static void main(String[] args) throws IOException {
+        int maxSquares = args.length > 0 ? Integer.parseInt(args[0]) : RegionDatabase.MAX_SQUARES;
+        String file = args.length > 1 ? args[1] : RegionDatabase.DEFAULT_FILE;
+        long start = System.currentTimeMillis();
+        int entries = RegionDatabase.generate(maxSquares, Paths.get(file));
+        System.out.println("Wrote " + entries + " regions of up to " + maxSquares + " squares to " + file + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+}
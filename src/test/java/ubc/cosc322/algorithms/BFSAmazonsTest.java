@@ -0,0 +1,174 @@
+package ubc.cosc322.algorithms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.MoveGenerator;
+
+public class BFSAmazonsTest {
+    private static final int SIZE = Board.DEFAULT_BOARD_SIZE;
+    private static final int GAMES = 100;
+
+    // Labels the empty squares by flooding the 2D board one king step at a time.
+    private static int naiveLabels(Board board, int[] labels) {
+        Arrays.fill(labels, BFSAmazons.NO_REGION);
+        int regions = 0;
+        for (int seed = 0; seed < SIZE * SIZE; seed++) {
+            if (!board.isEmpty(seed) || labels[seed] != BFSAmazons.NO_REGION) {
+                continue;
+            }
+            Deque<Integer> queue = new ArrayDeque<>();
+            queue.add(seed);
+            labels[seed] = regions;
+            while (!queue.isEmpty()) {
+                int square = queue.poll();
+                for (int next : kingNeighbours(square)) {
+                    if (board.isEmpty(next) && labels[next] == BFSAmazons.NO_REGION) {
+                        labels[next] = regions;
+                        queue.add(next);
+                    }
+                }
+            }
+            regions++;
+        }
+        return regions;
+    }
+
+    private static int[] kingNeighbours(int square) {
+        int[] neighbours = new int[8];
+        int count = 0;
+        int x = square / SIZE;
+        int y = square % SIZE;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                int nx = x + dx;
+                int ny = y + dy;
+                if ((dx != 0 || dy != 0) && nx >= 0 && nx < SIZE && ny >= 0 && ny < SIZE) {
+                    neighbours[count++] = Board.square(nx, ny);
+                }
+            }
+        }
+        return Arrays.copyOf(neighbours, count);
+    }
+
+    // The queen bits of every naive region, numbered like getRegionQueens().
+    private static int[] naiveQueens(Board board, int[] labels, int regions) {
+        int[] queens = new int[regions];
+        int[] squares = new int[MoveGenerator.QUEENS_PER_PLAYER];
+        for (int player = Board.P1; player <= Board.P2; player++) {
+            int count = board.getQueenSquares(player, squares);
+            for (int i = 0; i < count; i++) {
+                int bit = 1 << ((player - 1) * MoveGenerator.QUEENS_PER_PLAYER + i);
+                for (int next : kingNeighbours(squares[i])) {
+                    if (labels[next] != BFSAmazons.NO_REGION) {
+                        queens[labels[next]] |= bit;
+                    }
+                }
+            }
+        }
+        return queens;
+    }
+
+    private static void assertMatchesNaiveFlood(BFSAmazons analyzer, Board board) {
+        int[] labels = new int[SIZE * SIZE];
+        int regions = naiveLabels(board, labels);
+        assertEquals(regions, analyzer.analyze(board));
+        assertEquals(regions, analyzer.getRegionCount());
+        // Both label the regions in order of their lowest square, so the labels agree exactly.
+        for (int square = 0; square < SIZE * SIZE; square++) {
+            assertEquals(labels[square], analyzer.getRegion(square), "square " + square);
+        }
+        int[] queens = naiveQueens(board, labels, regions);
+        boolean partitioned = true;
+        for (int region = 0; region < regions; region++) {
+            int size = 0;
+            for (int label : labels) {
+                if (label == region) size++;
+            }
+            assertEquals(size, analyzer.getRegionSize(region));
+            boolean[] listed = new boolean[SIZE * SIZE];
+            for (int i = 0; i < size; i++) {
+                int square = analyzer.getRegionSquare(region, i);
+                assertEquals(region, labels[square]);
+                assertFalse(listed[square], "square listed twice");
+                listed[square] = true;
+            }
+            assertEquals(queens[region], analyzer.getRegionQueens(region), "region " + region);
+            partitioned &= !analyzer.isContested(region);
+        }
+        assertEquals(partitioned, analyzer.isPartitioned());
+        assertEquals(partitioned, analyzer.isPartitioned(board));
+    }
+
+    @Test
+    void givenRandomGames_whenAnalyzed_thenRegionsAndQueensMatchNaiveFlood() {
+        Random random = new Random(22);
+        BFSAmazons analyzer = new BFSAmazons();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int partitioned = 0;
+        for (int game = 0; game < GAMES; game++) {
+            Board board = new Board();
+            int player = Board.P1;
+            while (true) {
+                assertMatchesNaiveFlood(analyzer, board);
+                if (analyzer.isPartitioned()) partitioned++;
+                if (board.checkStatus() != Board.IN_PROGRESS) {
+                    break;
+                }
+                int count = board.getAllPossibleMoves(player, moves);
+                board.makeMove(moves[random.nextInt(count)]);
+                player = 3 - player;
+            }
+        }
+        assertTrue(partitioned > 0, "no partitioned position was reached");
+    }
+
+    @Test
+    void givenAdjacentOpposingQueens_whenNoEmptySquareIsShared_thenBoardIsPartitioned() {
+        int[][] values = new int[SIZE][SIZE];
+        for (int[] row : values) {
+            Arrays.fill(row, Board.ARROW);
+        }
+        values[0][1] = Board.P1;
+        values[0][2] = Board.P2;
+        values[0][0] = 0; // Next to P1's queen only
+        values[0][3] = 0; // Next to P2's queen only
+        Board board = new Board();
+        board.setBoard(values);
+        BFSAmazons analyzer = new BFSAmazons();
+        assertMatchesNaiveFlood(analyzer, board);
+        assertEquals(2, analyzer.getRegionCount());
+        assertTrue(analyzer.isPartitioned(board));
+        assertEquals(Board.IN_PROGRESS, board.checkStatus());
+
+        // Opening a square next to both queens gives them something to fight over.
+        board.removeArrow(Board.square(1, 2));
+        assertMatchesNaiveFlood(analyzer, board);
+        assertFalse(analyzer.isPartitioned(board));
+    }
+
+    @Test
+    void givenFullBoard_whenAnalyzed_thenThereAreNoRegions() {
+        int[][] values = new int[SIZE][SIZE];
+        for (int[] row : values) {
+            Arrays.fill(row, Board.ARROW);
+        }
+        values[0][0] = Board.P1;
+        values[9][9] = Board.P2;
+        Board board = new Board();
+        board.setBoard(values);
+        BFSAmazons analyzer = new BFSAmazons();
+        assertMatchesNaiveFlood(analyzer, board);
+        assertEquals(0, analyzer.getRegionCount());
+        assertTrue(analyzer.isPartitioned(board));
+    }
+}
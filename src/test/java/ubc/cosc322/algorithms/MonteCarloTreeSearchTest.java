@@ -0,0 +1,230 @@
+package ubc.cosc322.algorithms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.Move;
+import ubc.cosc322.core.MoveGenerator;
+
+public class MonteCarloTreeSearchTest {
+    private static final long TABLE_BYTES = 1L << 20;
+    private static final long TREE_BYTES = 1L << 24;
+    private static final int ITERATIONS = 4000;
+
+    private static MonteCarloTreeSearch newSearch(boolean twoStage) {
+        MonteCarloTreeSearch search = new MonteCarloTreeSearch(TABLE_BYTES, TREE_BYTES);
+        search.setThreads(2);
+        search.setIterationLimit(ITERATIONS);
+        search.setTwoStageSearch(twoStage);
+        return search;
+    }
+
+    private static int mostVisitedChild(SearchTree tree, int node) {
+        int best = SearchTree.NONE;
+        for (int child = tree.getFirstChild(node); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+            if (best == SearchTree.NONE || tree.getVisits(child) > tree.getVisits(best)) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    // The visits and score of each child of a node, packed into one long and keyed by the child's move.
+    private static Map<Integer, Long> childStats(SearchTree tree, int node) {
+        Map<Integer, Long> stats = new HashMap<>();
+        for (int child = tree.getFirstChild(node); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+            stats.put(tree.getMove(child), ((long) tree.getVisits(child) << 32) | (tree.getScore(child) & 0xFFFFFFFFL));
+        }
+        return stats;
+    }
+
+    // Searches our move, lets the opponent reply with the move the tree explored most, and checks that the subtree of
+    // the reply became the tree, statistics included.
+    private static void assertReplyIsReused(boolean twoStage) {
+        MonteCarloTreeSearch search = newSearch(twoStage);
+        try {
+            Board board = new Board();
+            board = search.findNextMove(board, Board.P1);
+            SearchTree tree = search.getSearchTree();
+            assertTrue(tree.hasRoot());
+            assertEquals(board.getHash(), tree.getRootState().getHash(), "the tree follows our own move");
+            assertEquals(Board.P2, tree.getRootPlayer());
+
+            int reply = mostVisitedChild(tree, SearchTree.ROOT);
+            assertNotEquals(SearchTree.NONE, reply);
+            if (twoStage) {
+                // The most visited complete move, found below the queen step it starts with.
+                int best = SearchTree.NONE;
+                for (int step = tree.getFirstChild(SearchTree.ROOT); step != SearchTree.NONE;
+                        step = tree.getNextSibling(step)) {
+                    assertFalse(Move.hasArrow(tree.getMove(step)), "the root's children are queen steps");
+                    assertTrue(tree.isAwaitingArrow(step));
+                    int arrow = mostVisitedChild(tree, step);
+                    if (arrow != SearchTree.NONE
+                            && (best == SearchTree.NONE || tree.getVisits(arrow) > tree.getVisits(best))) {
+                        best = arrow;
+                    }
+                }
+                reply = best;
+                assertNotEquals(SearchTree.NONE, reply);
+            }
+            int move = tree.getMove(reply);
+            assertTrue(Move.hasArrow(move));
+            int visits = tree.getVisits(reply);
+            int score = tree.getScore(reply);
+            long key = tree.getKey(reply);
+            if (tree.getFirstChild(reply) == SearchTree.NONE) {
+                // The search did not get below the reply; reveal a few of its children so there is a subtree to keep.
+                Board state = tree.getRootState().clone();
+                state.makeMove(move);
+                int[] buffer = new int[MoveGenerator.MAX_MOVES];
+                tree.expand(reply, state, Board.P1, buffer);
+                for (int i = 0; i < 3; i++) {
+                    tree.update(tree.activate(reply, 3, state, Board.P1, buffer), i + 1, i);
+                }
+            }
+            Map<Integer, Long> children = childStats(tree, reply);
+            assertFalse(children.isEmpty());
+
+            search.applyMove(move);
+            board.makeMove(move);
+
+            assertTrue(tree.hasRoot());
+            assertEquals(board.getHash(), tree.getRootState().getHash());
+            assertEquals(Board.P1, tree.getRootPlayer());
+            assertEquals(key, tree.getKey(SearchTree.ROOT));
+            assertEquals(TranspositionTable.key(board, Board.P2), tree.getKey(SearchTree.ROOT));
+            assertEquals(visits, tree.getVisits(SearchTree.ROOT));
+            assertEquals(score, tree.getScore(SearchTree.ROOT));
+            assertEquals(children, childStats(tree, SearchTree.ROOT));
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    void givenSearchedPosition_whenOpponentReplies_thenTheReplysSubtreeIsKept() {
+        assertReplyIsReused(false);
+    }
+
+    @Test
+    void givenTwoStageSearch_whenOpponentReplies_thenTheArrowNodeOfTheReplyBecomesTheRoot() {
+        assertReplyIsReused(true);
+    }
+
+    @Test
+    void givenSearchedPosition_whenOpponentPlaysAnUnexploredMove_thenTheTreeStartsOver() {
+        MonteCarloTreeSearch search = newSearch(false);
+        try {
+            Board board = search.findNextMove(new Board(), Board.P1);
+            SearchTree tree = search.getSearchTree();
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int count = board.getAllPossibleMoves(Board.P2, moves);
+            int unexplored = Move.NONE;
+            for (int i = 0; i < count && unexplored == Move.NONE; i++) {
+                if (tree.findChild(SearchTree.ROOT, moves[i]) == SearchTree.NONE) {
+                    unexplored = moves[i];
+                }
+            }
+            assertNotEquals(Move.NONE, unexplored);
+            search.applyMove(unexplored);
+            assertFalse(tree.hasRoot());
+            board.makeMove(unexplored);
+            search.findNextMove(board, Board.P1);
+            assertTrue(tree.hasRoot());
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    private static Set<Thread> workerThreads() {
+        Set<Thread> workers = new HashSet<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("mcts-worker-")) {
+                workers.add(thread);
+            }
+        }
+        return workers;
+    }
+
+    @Test
+    void givenPondering_whenStopped_thenNoWorkerIsLeftInTheTree() throws InterruptedException {
+        Set<Thread> others = workerThreads();
+        MonteCarloTreeSearch search = newSearch(false);
+        try {
+            search.findNextMove(new Board(), Board.P1);
+            SearchTree tree = search.getSearchTree();
+            int before = tree.getVisits(SearchTree.ROOT);
+            search.startPondering();
+            assertTrue(search.isSearching());
+            Thread.sleep(100);
+            search.stopPondering();
+            assertFalse(search.isSearching());
+            int visits = tree.getVisits(SearchTree.ROOT);
+            assertTrue(visits > before, "pondering searched the retained tree");
+            Thread.sleep(50);
+            assertEquals(visits, tree.getVisits(SearchTree.ROOT), "the tree changed after pondering stopped");
+            Set<Thread> workers = workerThreads();
+            workers.removeAll(others);
+            assertEquals(2, workers.size());
+            for (Thread worker : workers) {
+                assertEquals(Thread.State.WAITING, worker.getState(), worker.getName());
+            }
+
+            search.shutdown();
+            for (Thread worker : workers) {
+                worker.join(1000);
+                assertFalse(worker.isAlive(), worker.getName());
+            }
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    void givenPondering_whenOpponentReplies_thenPonderingStopsAndTheReplyBecomesTheRoot() throws InterruptedException {
+        MonteCarloTreeSearch search = newSearch(false);
+        try {
+            Board board = search.findNextMove(new Board(), Board.P1);
+            SearchTree tree = search.getSearchTree();
+            search.startPondering();
+            Thread.sleep(100);
+            assertTrue(search.isSearching());
+            int reply = Move.NONE;
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int count = board.getAllPossibleMoves(Board.P2, moves);
+            for (int i = 0; i < count && reply == Move.NONE; i++) {
+                if (tree.findChild(SearchTree.ROOT, moves[i]) != SearchTree.NONE) {
+                    reply = moves[i]; // Reading the list is safe while the workers extend it
+                }
+            }
+            assertNotEquals(Move.NONE, reply);
+
+            search.applyMove(reply);
+            board.makeMove(reply);
+
+            assertFalse(search.isSearching());
+            assertTrue(tree.hasRoot());
+            assertEquals(board.getHash(), tree.getRootState().getHash());
+            assertEquals(TranspositionTable.key(board, Board.P2), tree.getKey(SearchTree.ROOT));
+            // Starting and stopping again with nothing running in between is harmless.
+            search.stopPondering();
+            search.startPondering();
+            search.startPondering();
+            search.stopPondering();
+            assertFalse(search.isSearching());
+        } finally {
+            search.shutdown();
+        }
+    }
+}
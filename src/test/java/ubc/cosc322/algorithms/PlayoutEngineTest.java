@@ -0,0 +1,170 @@
+package ubc.cosc322.algorithms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.Move;
+import ubc.cosc322.core.MoveGenerator;
+
+public class PlayoutEngineTest {
+    private static final int GAMES = 300;
+
+    // Builds a board from one string per row x: '.' is empty, 'X' an arrow, '1' and '2' the players' queens.
+    static Board boardOf(String... rows) {
+        int[][] values = new int[Board.DEFAULT_BOARD_SIZE][Board.DEFAULT_BOARD_SIZE];
+        for (int x = 0; x < rows.length; x++) {
+            for (int y = 0; y < rows[x].length(); y++) {
+                char c = rows[x].charAt(y);
+                values[x][y] = c == 'X' ? Board.ARROW : c == '1' ? Board.P1 : c == '2' ? Board.P2 : 0;
+            }
+        }
+        Board board = new Board();
+        board.setBoard(values);
+        return board;
+    }
+
+    @Test
+    void givenQueenBetweenTwoPockets_whenPartitioned_thenItsMovesAreCountedOnce() {
+        // P1's queen can fill one of its pockets but not both, so each side has one move and the side to move loses.
+        Board board = boardOf(
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXX.XXXXXX",
+                "XXXX1.XXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXX2.X",
+                "XXXXXXXXXX");
+        assertEquals(Board.P2, PlayoutEngine.get().playout(board, Board.P1));
+        assertEquals(Board.P1, PlayoutEngine.get().playout(board, Board.P2));
+    }
+
+    @Test
+    void givenQueenBetweenLargeRegionAndPocket_whenPartitioned_thenOnlyTheBetterRegionCounts() {
+        // Each side owns a 13 square region; P1's queen also touches a pocket it can only use instead of the region.
+        Board board = boardOf(
+                "..........",
+                "...XXXXXXX",
+                "X1XXXXXXXX",
+                "X.XXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "X2XXXXXXXX",
+                "...XXXXXXX",
+                "..........");
+        assertEquals(Board.P2, PlayoutEngine.get().playout(board, Board.P1));
+        assertEquals(Board.P1, PlayoutEngine.get().playout(board, Board.P2));
+    }
+
+    private static int countArrows(Board board) {
+        int arrows = 0;
+        for (int square = 0; square < Board.DEFAULT_BOARD_SIZE * Board.DEFAULT_BOARD_SIZE; square++) {
+            if (board.getValue(square) == Board.ARROW) arrows++;
+        }
+        return arrows;
+    }
+
+    @Test
+    void givenRandomPositions_whenPlayedOut_thenTheWinnerFollowsFromWhereThePlayoutStopped() {
+        PlayoutEngine engine = new PlayoutEngine();
+        PlayoutEngine verdicts = new PlayoutEngine();
+        TerritoryEvaluator evaluator = new TerritoryEvaluator();
+        BFSAmazons regions = new BFSAmazons();
+        Random random = new Random(20);
+        int[] stops = new int[3]; // Game over, partitioned, cut off
+        for (int game = 0; game < GAMES; game++) {
+            Board board = new Board();
+            engine.playoutInPlace(board, Board.P1, random.nextInt(70));
+            int player = 1 + random.nextInt(2);
+            int maxPlies = random.nextInt(40);
+            int arrows = countArrows(board);
+            int winner = engine.playoutInPlace(board, player, maxPlies);
+            assertTrue(winner == Board.P1 || winner == Board.P2, "winner " + winner);
+            // Every ply shoots one arrow, so the arrows tell who is to move where the playout stopped.
+            int plies = countArrows(board) - arrows;
+            int toMove = plies % 2 == 0 ? player : 3 - player;
+            int status = board.checkStatus();
+            if (status == Board.P1 || status == Board.P2) {
+                assertEquals(status, winner);
+                stops[0]++;
+            } else if (status == Board.DRAW) {
+                assertEquals(3 - toMove, winner, "the player to move is stuck");
+                stops[0]++;
+            } else if (board.countEmptySquares() <= PlayoutEngine.PARTITION_EMPTY_SQUARES
+                    && regions.isPartitioned(board)) {
+                // Decided on the spot, without playing a move.
+                assertEquals(winner, verdicts.playoutInPlace(board.clone(), toMove, 0));
+                stops[1]++;
+            } else {
+                assertEquals(maxPlies, plies);
+                assertEquals(evaluator.predictWinner(board, toMove), winner);
+                stops[2]++;
+            }
+        }
+        for (int stop : stops) {
+            assertTrue(stop > 0, "a way of stopping was never tested");
+        }
+    }
+
+    @Test
+    void givenRandomPositions_whenARandomPlyIsPlayed_thenOnlyQueensThatCanMoveAreMoved() {
+        PlayoutEngine engine = new PlayoutEngine();
+        Random random = new Random(4);
+        int[] queens = new int[MoveGenerator.QUEENS_PER_PLAYER];
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int withStuckQueen = 0;
+        for (int game = 0; game < GAMES; game++) {
+            Board board = new Board();
+            int player = Board.P1;
+            int length = random.nextInt(100); // Some games are left before the end
+            for (int ply = 0; ply < length && board.checkStatus() == Board.IN_PROGRESS; ply++) {
+                int queenCount = board.getQueenSquares(player, queens);
+                for (int i = 0; i < queenCount; i++) {
+                    if (!MoveGenerator.hasMove(board, queens[i])) {
+                        withStuckQueen++;
+                    }
+                }
+                int count = board.getAllPossibleMoves(player, moves);
+                Board expected = board.clone();
+                int move = engine.randomPly(board, player);
+                assertTrue(MoveGenerator.hasMove(expected, Move.from(move)), Move.toString(move));
+                boolean legal = false;
+                for (int i = 0; i < count && !legal; i++) {
+                    legal = moves[i] == move;
+                }
+                assertTrue(legal, Move.toString(move));
+                expected.makeMove(move);
+                assertEquals(expected.getHash(), board.getHash());
+                player = 3 - player;
+            }
+        }
+        assertTrue(withStuckQueen > 0, "no position had a queen that could not move");
+    }
+
+    @Test
+    void givenNoQueenCanMove_whenARandomPlyIsPlayed_thenNothingIsPlayed() {
+        Board board = boardOf(
+                "1XXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXX.X",
+                "XXXXXXXXX2");
+        long hash = board.getHash();
+        assertEquals(Move.NONE, new PlayoutEngine().randomPly(board, Board.P1));
+        assertEquals(hash, board.getHash());
+        assertEquals(Board.P2, new PlayoutEngine().playout(board, Board.P1));
+    }
+}
@@ -0,0 +1,167 @@
+package ubc.cosc322.algorithms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ubc.cosc322.core.Board;
+
+public class RegionDatabaseTest {
+    private static final int SIZE = Board.DEFAULT_BOARD_SIZE;
+    private static final int MAX_SQUARES = 5; // Generates in well under a second
+    private static final int CASES = 500;
+
+    private static long[] mask(int[] squares, int count) {
+        long[] mask = new long[2];
+        for (int i = 0; i < count; i++) {
+            if (squares[i] < 64) mask[0] |= 1L << squares[i];
+            else mask[1] |= 1L << (squares[i] - 64);
+        }
+        return mask;
+    }
+
+    private static boolean contains(int[] squares, int count, int square) {
+        for (int i = 0; i < count; i++) {
+            if (squares[i] == square) return true;
+        }
+        return false;
+    }
+
+    // Grows a random connected region of the given size plus a queen next to it; the queen is the last square.
+    private static int[] randomRegion(Random random, int size) {
+        int[] squares = new int[size + 1];
+        squares[0] = random.nextInt(SIZE * SIZE);
+        for (int i = 1; i <= size; i++) {
+            while (true) {
+                int from = squares[random.nextInt(i)];
+                int x = from / SIZE + random.nextInt(3) - 1;
+                int y = from % SIZE + random.nextInt(3) - 1;
+                if (x >= 0 && x < SIZE && y >= 0 && y < SIZE && !contains(squares, i, Board.square(x, y))) {
+                    squares[i] = Board.square(x, y);
+                    break;
+                }
+            }
+        }
+        return squares;
+    }
+
+    // Turns or mirrors the squares by one of the eight symmetries and moves them to a random place they fit.
+    private static int[] transform(Random random, int[] squares, int symmetry) {
+        int[] xs = new int[squares.length];
+        int[] ys = new int[squares.length];
+        for (int i = 0; i < squares.length; i++) {
+            int x = squares[i] / SIZE;
+            int y = squares[i] % SIZE;
+            if ((symmetry & 1) != 0) {
+                int swap = x;
+                x = y;
+                y = swap;
+            }
+            xs[i] = (symmetry & 2) == 0 ? x : SIZE - 1 - x;
+            ys[i] = (symmetry & 4) == 0 ? y : SIZE - 1 - y;
+        }
+        int minX = Arrays.stream(xs).min().getAsInt();
+        int maxX = Arrays.stream(xs).max().getAsInt();
+        int minY = Arrays.stream(ys).min().getAsInt();
+        int maxY = Arrays.stream(ys).max().getAsInt();
+        int dx = random.nextInt(SIZE - (maxX - minX)) - minX;
+        int dy = random.nextInt(SIZE - (maxY - minY)) - minY;
+        int[] image = new int[squares.length];
+        for (int i = 0; i < squares.length; i++) {
+            image[i] = Board.square(xs[i] + dx, ys[i] + dy);
+        }
+        return image;
+    }
+
+    private static long key(int[] regionAndQueen) {
+        int size = regionAndQueen.length - 1;
+        long[] mask = mask(regionAndQueen, size);
+        return RegionDatabase.canonicalKey(mask[0], mask[1], regionAndQueen[size]);
+    }
+
+    @Test
+    void givenRegion_whenTurnedMirroredOrMoved_thenCanonicalKeyIsTheSame() {
+        Random random = new Random(25);
+        for (int test = 0; test < CASES; test++) {
+            int[] region = randomRegion(random, 1 + random.nextInt(RegionDatabase.MAX_SQUARES));
+            long key = key(region);
+            for (int symmetry = 0; symmetry < 8; symmetry++) {
+                assertEquals(key, key(transform(random, region, symmetry)), Arrays.toString(region));
+            }
+        }
+    }
+
+    @Test
+    void givenCorridor_whenQueenStandsAtEitherEndOrBeside_thenOnlyTheEndsShareAKey() {
+        int[] region = {Board.square(4, 2), Board.square(4, 3), Board.square(4, 4)};
+        long[] mask = mask(region, region.length);
+        long end = RegionDatabase.canonicalKey(mask[0], mask[1], Board.square(4, 1));
+        long otherEnd = RegionDatabase.canonicalKey(mask[0], mask[1], Board.square(4, 5));
+        long side = RegionDatabase.canonicalKey(mask[0], mask[1], Board.square(5, 3));
+        assertEquals(end, otherEnd);
+        assertNotEquals(end, side);
+        assertNotEquals(end, RegionDatabase.canonicalKey(mask[0], mask[1], -1));
+    }
+
+    @Test
+    void givenGeneratedFile_whenMappedAndLookedUp_thenResultsMatchTheSolver() throws IOException {
+        Path file = Files.createTempFile("regions", ".db");
+        try {
+            RegionDatabase.generate(MAX_SQUARES, file);
+            RegionDatabase database = RegionDatabase.load(file);
+            assertEquals(MAX_SQUARES, database.getMaxSquares());
+            // Regions of every orientation and place; those one square too large are not in the database.
+            Random random = new Random(26);
+            RegionSolver solver = new RegionSolver();
+            int[] queen = new int[1];
+            for (int test = 0; test < CASES; test++) {
+                int size = 1 + random.nextInt(MAX_SQUARES + 1);
+                int[] region = transform(random, randomRegion(random, size), random.nextInt(8));
+                long[] mask = mask(region, size);
+                queen[0] = region[size];
+                int moves = database.lookup(mask[0], mask[1], queen[0]);
+                if (size > MAX_SQUARES) {
+                    assertEquals(RegionDatabase.NOT_FOUND, moves);
+                } else {
+                    assertEquals(solver.solve(region, size, queen, 1), moves, Arrays.toString(region));
+                }
+            }
+        } finally {
+            file.toFile().deleteOnExit(); // Some platforms refuse to delete a file that is still mapped
+        }
+    }
+
+    @Test
+    void givenSingleSquare_whenGenerated_thenEachQueenSquareUpToSymmetryIsStoredOnce() throws IOException {
+        Path file = Files.createTempFile("regions", ".db");
+        try {
+            assertEquals(2, RegionDatabase.generate(1, file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void givenFileThatIsNotADatabase_whenLoaded_thenLoadFails() throws IOException {
+        Path file = Files.createTempFile("regions", ".db");
+        try {
+            Files.write(file, new byte[64]);
+            assertThrows(IOException.class, () -> RegionDatabase.load(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void givenEmptyDatabase_whenLookedUp_thenNothingIsFound() {
+        assertEquals(RegionDatabase.NOT_FOUND, RegionDatabase.EMPTY.lookup(1L, 0L, 1));
+    }
+}
@@ -0,0 +1,139 @@
+package ubc.cosc322.algorithms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.MoveGenerator;
+
+public class RegionSolverTest {
+    private static final int SIZE = Board.DEFAULT_BOARD_SIZE;
+    private static final int MAX_REGION = 6; // Keeps the unmemoized brute force fast
+    private static final int CASES = 300;
+
+    // A board of arrows with the given squares empty and P1 queens on the given queen squares.
+    private static Board walledBoard(int[] squares, int size, int[] queens, int queenCount) {
+        int[][] values = new int[SIZE][SIZE];
+        for (int[] row : values) {
+            Arrays.fill(row, Board.ARROW);
+        }
+        for (int i = 0; i < size; i++) {
+            values[squares[i] / SIZE][squares[i] % SIZE] = 0;
+        }
+        for (int i = 0; i < queenCount; i++) {
+            values[queens[i] / SIZE][queens[i] % SIZE] = Board.P1;
+        }
+        Board board = new Board();
+        board.setBoard(values);
+        return board;
+    }
+
+    // Tries every queen move and arrow shot; the rest of the board is arrows, so the board itself keeps the queens in.
+    private static int bruteForce(Board board, int[] queens, int queenCount) {
+        int best = 0;
+        int[] targets = new int[MoveGenerator.MAX_MOVES_PER_SQUARE];
+        int[] arrows = new int[MoveGenerator.MAX_MOVES_PER_SQUARE];
+        for (int i = 0; i < queenCount; i++) {
+            int from = queens[i];
+            int steps = MoveGenerator.generate(board, from, targets, 0);
+            for (int s = 0; s < steps; s++) {
+                int to = targets[s];
+                board.moveQueen(from, to);
+                queens[i] = to;
+                int shots = MoveGenerator.generate(board, to, arrows, 0);
+                for (int a = 0; a < shots; a++) {
+                    board.placeArrow(arrows[a]);
+                    best = Math.max(best, 1 + bruteForce(board, queens, queenCount));
+                    board.removeArrow(arrows[a]);
+                }
+                queens[i] = from;
+                board.moveQueen(to, from);
+            }
+        }
+        return best;
+    }
+
+    private static boolean isKingNeighbour(int a, int b) {
+        return a != b && Math.abs(a / SIZE - b / SIZE) <= 1 && Math.abs(a % SIZE - b % SIZE) <= 1;
+    }
+
+    private static boolean contains(int[] squares, int count, int square) {
+        for (int i = 0; i < count; i++) {
+            if (squares[i] == square) return true;
+        }
+        return false;
+    }
+
+    // Picks a random square next to the first count squares that is not one of them.
+    private static int randomNeighbour(Random random, int[] squares, int count, int[] exclude, int excludeCount) {
+        while (true) {
+            int square = random.nextInt(SIZE * SIZE);
+            if (contains(squares, count, square) || contains(exclude, excludeCount, square)) {
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                if (isKingNeighbour(square, squares[i])) return square;
+            }
+        }
+    }
+
+    @Test
+    void givenRandomSmallRegions_whenSolved_thenResultMatchesBruteForce() {
+        Random random = new Random(24);
+        RegionSolver solver = new RegionSolver();
+        BFSAmazons analyzer = new BFSAmazons();
+        int[] squares = new int[MAX_REGION];
+        int[] queens = new int[2];
+        int unfillable = 0;
+        for (int test = 0; test < CASES; test++) {
+            int size = 1 + random.nextInt(MAX_REGION);
+            int queenCount = 1 + random.nextInt(2);
+            squares[0] = random.nextInt(SIZE * SIZE);
+            for (int i = 1; i < size; i++) {
+                squares[i] = randomNeighbour(random, squares, i, queens, 0);
+            }
+            for (int i = 0; i < queenCount; i++) {
+                queens[i] = randomNeighbour(random, squares, size, queens, i);
+            }
+            Board board = walledBoard(squares, size, queens, queenCount);
+            int expected = bruteForce(board, queens.clone(), queenCount);
+            String region = Arrays.toString(Arrays.copyOf(squares, size)) + " queens "
+                    + Arrays.toString(Arrays.copyOf(queens, queenCount));
+            assertEquals(expected, solver.solve(squares, size, queens.clone(), queenCount), region);
+            // The same region found on the board; solved twice so the second answer comes from the cache.
+            analyzer.analyze(board);
+            int label = analyzer.getRegion(squares[0]);
+            assertEquals(expected, solver.solve(board, analyzer, label, Board.P1), region);
+            assertEquals(expected, solver.solve(board, analyzer, label, Board.P1), region);
+            if (expected < size) unfillable++;
+        }
+        assertTrue(unfillable > 0, "every region could be filled, so the search was never tested");
+    }
+
+    @Test
+    void givenNoQueens_whenSolved_thenNoMovesCanBeMade() {
+        int[] squares = {Board.square(4, 4), Board.square(4, 5)};
+        assertEquals(0, new RegionSolver().solve(squares, squares.length, new int[0], 0));
+    }
+
+    @Test
+    void givenQueenBetweenTwoPockets_whenSolvedTogether_thenItIsNotCountedInBoth() {
+        // The queen can step into either pocket, but the arrow it shoots then closes the way to the other one.
+        int[] squares = {Board.square(4, 5), Board.square(3, 3)};
+        int[] queens = {Board.square(4, 4)};
+        Board board = walledBoard(squares, squares.length, queens, 1);
+        BFSAmazons analyzer = new BFSAmazons();
+        assertEquals(2, analyzer.analyze(board));
+        RegionSolver solver = new RegionSolver();
+        int[] group = {analyzer.getRegion(squares[0]), analyzer.getRegion(squares[1])};
+        assertEquals(1, solver.solve(board, analyzer, group[0], Board.P1));
+        assertEquals(1, solver.solve(board, analyzer, group[1], Board.P1));
+        assertEquals(bruteForce(board, queens.clone(), 1), solver.solve(board, analyzer, group, 2, 1, Board.P1));
+        assertEquals(1, solver.solve(board, analyzer, group, 2, 1, Board.P1));
+    }
+}
@@ -0,0 +1,260 @@
+package ubc.cosc322.algorithms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import ubc.cosc322.core.Board;
+import ubc.cosc322.core.Move;
+import ubc.cosc322.core.MoveGenerator;
+
+public class SearchTreeTest {
+    private static final long BUDGET = 1L << 20;
+
+    private final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+
+    // Replays the moves from the root down to a node of a one-stage tree.
+    private static Board positionOf(SearchTree tree, int node) {
+        List<Integer> path = new ArrayList<>();
+        for (int i = node; i != SearchTree.ROOT; i = tree.getParent(i)) {
+            path.add(0, tree.getMove(i));
+        }
+        Board board = tree.getRootState().clone();
+        for (int move : path) {
+            board.makeMove(move);
+        }
+        return board;
+    }
+
+    private static int depthOf(SearchTree tree, int node) {
+        int depth = 0;
+        for (int i = node; i != SearchTree.ROOT; i = tree.getParent(i)) {
+            depth++;
+        }
+        return depth;
+    }
+
+    // Every slot in use is reachable from the root exactly once through the child lists, children come after their
+    // parents, and each node's key is the key of the position its moves lead to.
+    private static void assertConsistent(SearchTree tree) {
+        assertEquals(SearchTree.NONE, tree.getParent(SearchTree.ROOT));
+        boolean[] seen = new boolean[tree.size()];
+        seen[SearchTree.ROOT] = true;
+        for (int node = SearchTree.ROOT; node < tree.size(); node++) {
+            assertTrue(seen[node], "node " + node + " is not linked from its parent");
+            for (int child = tree.getFirstChild(node); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+                assertTrue(child > node && child < tree.size(), "child " + child + " of " + node);
+                assertEquals(node, tree.getParent(child));
+                assertFalse(seen[child], "child " + child + " is linked twice");
+                seen[child] = true;
+            }
+            int mover = depthOf(tree, node) % 2 == 0 ? 3 - tree.getRootPlayer() : tree.getRootPlayer();
+            assertEquals(TranspositionTable.key(positionOf(tree, node), mover), tree.getKey(node), "node " + node);
+        }
+    }
+
+    private static List<Integer> children(SearchTree tree, int node) {
+        List<Integer> children = new ArrayList<>();
+        for (int child = tree.getFirstChild(node); child != SearchTree.NONE; child = tree.getNextSibling(child)) {
+            children.add(child);
+        }
+        return children;
+    }
+
+    // Reveals up to count children of a node and returns them in the order they were revealed.
+    private List<Integer> reveal(SearchTree tree, int node, int count, int playerToMove) {
+        Board state = positionOf(tree, node);
+        tree.expand(node, state, playerToMove, buffer);
+        List<Integer> revealed = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int child = tree.activate(node, count, state, playerToMove, buffer);
+            if (child == SearchTree.NONE) {
+                break;
+            }
+            revealed.add(child);
+        }
+        return revealed;
+    }
+
+    @Test
+    void givenExpandedRoot_whenChildrenAreActivated_thenEachIsLinkedOnceWithADistinctLegalMove() {
+        SearchTree tree = new SearchTree(BUDGET);
+        Board board = new Board();
+        tree.reset(board, Board.P1, false);
+        int legal = board.getAllPossibleMoves(Board.P1, buffer);
+        Set<Integer> legalMoves = new HashSet<>();
+        for (int i = 0; i < legal; i++) legalMoves.add(buffer[i]);
+
+        List<Integer> revealed = reveal(tree, SearchTree.ROOT, 5, Board.P1);
+        assertEquals(5, revealed.size());
+        assertEquals(SearchTree.NONE, tree.activate(SearchTree.ROOT, 5, board, Board.P1, buffer), "over the limit");
+        assertEquals(6, tree.size());
+        Set<Integer> moves = new HashSet<>();
+        for (int child : revealed) {
+            assertTrue(legalMoves.contains(tree.getMove(child)));
+            assertTrue(moves.add(tree.getMove(child)), "move revealed twice");
+            assertEquals(child, tree.findChild(SearchTree.ROOT, tree.getMove(child)));
+        }
+        // The list runs newest first.
+        assertEquals(revealed.get(4), Integer.valueOf(tree.getFirstChild(SearchTree.ROOT)));
+        assertConsistent(tree);
+    }
+
+    @Test
+    void givenThreadsRacingOnOneNode_whenAllMovesAreRevealed_thenEveryMoveIsLinkedExactlyOnce() throws Exception {
+        SearchTree tree = new SearchTree(BUDGET);
+        Board board = new Board();
+        tree.reset(board, Board.P1, false);
+        int legal = board.getAllPossibleMoves(Board.P1, buffer);
+        tree.expand(SearchTree.ROOT, board, Board.P1, buffer);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                Board state = new Board();
+                int[] moves = new int[MoveGenerator.MAX_MOVES];
+                while (tree.activate(SearchTree.ROOT, Integer.MAX_VALUE, state, Board.P1, moves) != SearchTree.NONE) {
+                    // Keep revealing until the root runs out of moves
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<Integer> moves = new HashSet<>();
+        for (int child : children(tree, SearchTree.ROOT)) {
+            assertTrue(moves.add(tree.getMove(child)), "move revealed twice");
+        }
+        assertEquals(legal, moves.size());
+        // Slots given up by threads that lost the race hold no node; compaction drops them.
+        tree.prune(0.0);
+        assertEquals(legal + 1, tree.size());
+        assertConsistent(tree);
+    }
+
+    @Test
+    void givenGrownTree_whenChildIsPromoted_thenItsSubtreeBecomesTheTreeWithItsStats() {
+        SearchTree tree = new SearchTree(BUDGET);
+        Board board = new Board();
+        tree.reset(board, Board.P1, false);
+        List<Integer> children = reveal(tree, SearchTree.ROOT, 6, Board.P1);
+        for (int i = 0; i < children.size(); i++) {
+            tree.update(children.get(i), 10 + i, 3 * i - 5);
+        }
+        int chosen = children.get(2);
+        List<Integer> grandchildren = reveal(tree, chosen, 4, Board.P2);
+        Map<Integer, long[]> expected = new HashMap<>();
+        for (int i = 0; i < grandchildren.size(); i++) {
+            int grandchild = grandchildren.get(i);
+            tree.update(grandchild, 1 + i, -i);
+            expected.put(tree.getMove(grandchild), new long[] {1 + i, -i});
+            if (i == 1) {
+                reveal(tree, grandchild, 3, Board.P1); // A level below is carried along too
+            }
+        }
+        reveal(tree, children.get(4), 3, Board.P2); // Dropped with its parent
+        int chosenMove = tree.getMove(chosen);
+        long chosenKey = tree.getKey(chosen);
+        int chosenVisits = tree.getVisits(chosen);
+        int chosenScore = tree.getScore(chosen);
+        board.makeMove(chosenMove);
+
+        tree.promote(chosen);
+
+        assertEquals(1 + 4 + 3, tree.size());
+        assertEquals(Board.P2, tree.getRootPlayer());
+        assertEquals(board.getHash(), tree.getRootState().getHash());
+        assertEquals(chosenKey, tree.getKey(SearchTree.ROOT));
+        assertEquals(TranspositionTable.key(board, Board.P1), tree.getKey(SearchTree.ROOT));
+        assertEquals(chosenVisits, tree.getVisits(SearchTree.ROOT));
+        assertEquals(chosenScore, tree.getScore(SearchTree.ROOT));
+        assertEquals(Move.NONE, tree.getMove(SearchTree.ROOT));
+        List<Integer> newChildren = children(tree, SearchTree.ROOT);
+        assertEquals(4, newChildren.size());
+        for (int child : newChildren) {
+            long[] stats = expected.get(tree.getMove(child));
+            assertEquals(stats[0], tree.getVisits(child));
+            assertEquals(stats[1], tree.getScore(child));
+        }
+        assertConsistent(tree);
+    }
+
+    @Test
+    void givenTreePastItsBudget_whenPruned_thenTheMostVisitedSubtreesSurvive() {
+        SearchTree tree = new SearchTree(BUDGET);
+        Board board = new Board();
+        tree.reset(board, Board.P1, false);
+        // Ten children with 1, 2, 4, ..., 512 visits, each with four revealed children of its own.
+        List<Integer> children = reveal(tree, SearchTree.ROOT, 10, Board.P1);
+        Map<Integer, Integer> visitsByMove = new HashMap<>();
+        Map<Integer, Integer> firstGrandchildMove = new HashMap<>();
+        for (int i = 0; i < children.size(); i++) {
+            int child = children.get(i);
+            tree.update(child, 1 << i, i - 4);
+            visitsByMove.put(tree.getMove(child), 1 << i);
+            List<Integer> grandchildren = reveal(tree, child, 4, Board.P2);
+            firstGrandchildMove.put(tree.getMove(child), tree.getMove(grandchildren.get(0)));
+            for (int grandchild : grandchildren) {
+                tree.update(grandchild, 1, 0);
+            }
+        }
+        assertEquals(1 + 10 + 40, tree.size());
+
+        // Freeing 30% (15 nodes) takes the children of every node below 16 visits: the 1, 2, 4 and 8 visit subtrees.
+        assertEquals(16, tree.prune(0.3));
+
+        assertEquals(1 + 10 + 24, tree.size());
+        List<Integer> kept = children(tree, SearchTree.ROOT);
+        assertEquals(10, kept.size());
+        for (int child : kept) {
+            int visits = visitsByMove.get(tree.getMove(child));
+            assertEquals(visits, tree.getVisits(child));
+            assertEquals(Integer.numberOfTrailingZeros(visits) - 4, tree.getScore(child));
+            assertEquals(visits >= 16 ? 4 : 0, children(tree, child).size(), "children of a " + visits + " visit node");
+            assertTrue(tree.isExpanded(child));
+        }
+        assertConsistent(tree);
+
+        // A collapsed node reveals the same moves again, in the same order.
+        for (int child : kept) {
+            if (tree.getVisits(child) < 16) {
+                int again = tree.activate(child, 1, positionOf(tree, child), Board.P2, buffer);
+                assertEquals(firstGrandchildMove.get(tree.getMove(child)), Integer.valueOf(tree.getMove(again)));
+            }
+        }
+        assertConsistent(tree);
+    }
+
+    @Test
+    void givenFullTree_whenActivating_thenItReportsFullUntilPruned() {
+        SearchTree tree = new SearchTree(0); // Rounded up to MIN_CAPACITY
+        assertEquals(SearchTree.MIN_CAPACITY, tree.capacity());
+        Board board = new Board();
+        tree.reset(board, Board.P1, false);
+        reveal(tree, SearchTree.ROOT, Integer.MAX_VALUE, Board.P1);
+        // Reveal grandchildren below one root child after another until there is no slot left.
+        for (int child = tree.getFirstChild(SearchTree.ROOT); !tree.isFull(); child = tree.getNextSibling(child)) {
+            tree.update(child, 1, 0);
+            Board state = positionOf(tree, child);
+            tree.expand(child, state, Board.P2, buffer);
+            while (tree.activate(child, Integer.MAX_VALUE, state, Board.P2, buffer) != SearchTree.NONE) {
+                // Keep revealing
+            }
+        }
+        assertEquals(SearchTree.MIN_CAPACITY, tree.size());
+        assertTrue(tree.isFull());
+        assertNotEquals(0, tree.prune(0.5));
+        assertFalse(tree.isFull());
+        assertConsistent(tree);
+    }
+}
@@ -0,0 +1,91 @@
+package ubc.cosc322.algorithms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ubc.cosc322.algorithms.PlayoutEngineTest.boardOf;
+
+import org.junit.jupiter.api.Test;
+
+import ubc.cosc322.core.Board;
+
+public class TerritoryEvaluatorTest {
+    private final TerritoryEvaluator evaluator = new TerritoryEvaluator();
+
+    @Test
+    void givenWalledOffAreas_whenEvaluated_thenTheSideWithMoreSquaresLeads() {
+        // P1 walls in four squares, P2 two; no square is reached by both, so the player to move makes no difference.
+        Board board = boardOf(
+                "XXXXXXXXXX",
+                "X1....XXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXX2..XX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX");
+        double balance = 2 + TerritoryEvaluator.KING_WEIGHT * 2;
+        assertEquals(balance, evaluator.evaluate(board, Board.P1));
+        assertEquals(balance, evaluator.evaluate(board, Board.P2));
+        assertEquals(Board.P1, evaluator.predictWinner(board, Board.P1));
+        assertEquals(Board.P1, evaluator.predictWinner(board, Board.P2));
+
+        // The same position with the players swapped is the same lead for P2.
+        Board swapped = boardOf(
+                "XXXXXXXXXX",
+                "X2....XXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXX1..XX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX");
+        assertEquals(-balance, evaluator.evaluate(swapped, Board.P1));
+        assertEquals(Board.P2, evaluator.predictWinner(swapped, Board.P1));
+        assertEquals(Board.P2, evaluator.predictWinner(swapped, Board.P2));
+    }
+
+    @Test
+    void givenSquareBothReachEqually_whenEvaluated_thenItGoesToThePlayerToMove() {
+        // The square between the queens is one queen move and one king move from each of them.
+        Board board = boardOf(
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXX1.2XXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX");
+        double tie = TerritoryEvaluator.TIE_VALUE + TerritoryEvaluator.KING_WEIGHT * TerritoryEvaluator.TIE_VALUE;
+        assertEquals(tie, evaluator.evaluate(board, Board.P1));
+        assertEquals(-tie, evaluator.evaluate(board, Board.P2));
+        // Whoever moves takes the square and shoots back into the one it left, leaving the other side stuck.
+        assertEquals(Board.P1, evaluator.predictWinner(board, Board.P1));
+        assertEquals(Board.P2, evaluator.predictWinner(board, Board.P2));
+    }
+
+    @Test
+    void givenEvenBalance_whenPredicted_thenThePlayerNotToMoveWins() {
+        // One square each: the player to move fills its square first and is then the first without a move.
+        Board board = boardOf(
+                "XXXXXXXXXX",
+                "X1.XXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX",
+                "XXXXXXX.2X",
+                "XXXXXXXXXX",
+                "XXXXXXXXXX");
+        assertEquals(0.0, evaluator.evaluate(board, Board.P1));
+        assertEquals(0.0, evaluator.evaluate(board, Board.P2));
+        assertEquals(Board.P2, evaluator.predictWinner(board, Board.P1));
+        assertEquals(Board.P1, evaluator.predictWinner(board, Board.P2));
+    }
+}
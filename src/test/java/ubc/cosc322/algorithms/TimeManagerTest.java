@@ -0,0 +1,118 @@
+package ubc.cosc322.algorithms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import ubc.cosc322.core.Board;
+
+public class TimeManagerTest {
+    private static final int[] BRANCHING = {0, 1, 2, 3, 10, 50, TimeManager.REFERENCE_BRANCHING - 1,
+            TimeManager.REFERENCE_BRANCHING, 2176, 10000};
+
+    // The starting position with arrows shot into empty squares until the given number is left.
+    private static Board boardWithEmptySquares(int empty) {
+        Board board = new Board();
+        for (int square = 0; board.countEmptySquares() > empty; square++) {
+            if (board.isEmpty(square)) {
+                board.placeArrow(square);
+            }
+        }
+        return board;
+    }
+
+    @Test
+    void givenAnyPhaseAndBranching_whenAllocated_thenBudgetStaysWithinTheLimits() {
+        for (int empty = 92; empty >= 0; empty--) {
+            Board board = boardWithEmptySquares(empty);
+            long previous = 0;
+            for (int branching : BRANCHING) {
+                TimeManager manager = new TimeManager();
+                long budget = manager.allocate(board, branching);
+                String position = empty + " empty squares, " + branching + " moves";
+                assertTrue(budget >= TimeManager.MIN_LIMIT_MILLIS && budget <= TimeManager.HARD_LIMIT_MILLIS, position);
+                assertTrue(budget <= TimeManager.BASE_LIMIT_MILLIS, position + " without a bank");
+                assertTrue(budget >= previous, position + ": more moves never get less time");
+                previous = budget;
+                if (branching <= 1) {
+                    assertEquals(TimeManager.MIN_LIMIT_MILLIS, budget);
+                }
+            }
+        }
+        // The midgame gets the most time for the same number of moves.
+        TimeManager manager = new TimeManager();
+        long opening = manager.allocate(boardWithEmptySquares(92), TimeManager.REFERENCE_BRANCHING);
+        long midgame = manager.allocate(boardWithEmptySquares(60), TimeManager.REFERENCE_BRANCHING);
+        long endgame = manager.allocate(boardWithEmptySquares(20), TimeManager.REFERENCE_BRANCHING);
+        assertEquals(TimeManager.BASE_LIMIT_MILLIS, midgame);
+        assertTrue(opening < midgame && endgame < midgame);
+    }
+
+    @Test
+    void givenLargeBank_whenAllocated_thenBudgetNeverPassesTheHardLimitAndTheBankRunsDown() {
+        TimeManager manager = new TimeManager();
+        // Many instant moves bank almost their whole budget.
+        for (int i = 0; i < 50; i++) {
+            manager.moveFinished(TimeManager.HARD_LIMIT_MILLIS, 0);
+        }
+        Board board = boardWithEmptySquares(60);
+        long previous = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long budget = manager.allocate(board, TimeManager.REFERENCE_BRANCHING);
+            assertTrue(budget <= TimeManager.HARD_LIMIT_MILLIS, "budget " + budget);
+            assertTrue(budget >= TimeManager.BASE_LIMIT_MILLIS && budget <= previous, "budget " + budget);
+            previous = budget;
+        }
+        assertEquals(TimeManager.BASE_LIMIT_MILLIS, previous, "the bank is spent");
+
+        // An overrun is charged to the bank, which never goes below empty.
+        manager.moveFinished(100, 5000);
+        assertEquals(TimeManager.BASE_LIMIT_MILLIS, manager.allocate(board, TimeManager.REFERENCE_BRANCHING));
+        manager.moveFinished(4000, 0);
+        manager.reset();
+        assertEquals(TimeManager.BASE_LIMIT_MILLIS, manager.allocate(board, TimeManager.REFERENCE_BRANCHING));
+    }
+
+    @Test
+    void givenVisitGap_whenAskedToStop_thenOnlyStopsWhenTheRunnerUpCannotCatchUp() {
+        TimeManager manager = new TimeManager();
+        // 10 visits per millisecond for 100 milliseconds: the runner-up can gain 1000 visits.
+        assertFalse(manager.canStopEarly(5000, 4000, 10.0, 100));
+        assertTrue(manager.canStopEarly(5001, 4000, 10.0, 100));
+        assertFalse(manager.canStopEarly(3000, 3000, 10.0, 0), "a tie can always be broken");
+        assertTrue(manager.canStopEarly(3001, 3000, 10.0, 0));
+        assertFalse(manager.canStopEarly(100000, 0, 1000.0, TimeManager.HARD_LIMIT_MILLIS));
+    }
+
+    @Test
+    void givenCloseMoves_whenExtendedRepeatedly_thenTheDeadlineNeverPassesTheHardLimit() {
+        TimeManager manager = new TimeManager();
+        long start = 1000000;
+        for (long budget : new long[] {TimeManager.MIN_LIMIT_MILLIS, 5000, TimeManager.BASE_LIMIT_MILLIS,
+                TimeManager.HARD_LIMIT_MILLIS}) {
+            long limit = start + Math.min(TimeManager.HARD_LIMIT_MILLIS, TimeManager.EXTENSION_FACTOR * budget);
+            long deadline = start + budget;
+            for (int i = 0; i < 10; i++) {
+                long extended = manager.extend(1000, 900, 0.1, start, budget, deadline);
+                assertTrue(extended >= deadline && extended <= limit, "budget " + budget);
+                deadline = extended;
+            }
+            assertEquals(limit, deadline, "budget " + budget);
+        }
+    }
+
+    @Test
+    void givenClearOrDecidedSearch_whenDeadlineIsReached_thenItIsNotExtended() {
+        TimeManager manager = new TimeManager();
+        long start = 0;
+        long budget = 10000;
+        long deadline = budget;
+        assertEquals(deadline, manager.extend(1000, 500, 0.1, start, budget, deadline), "the runner-up is far behind");
+        assertEquals(deadline, manager.extend(1000, 950, 0.95, start, budget, deadline), "a sure win");
+        assertEquals(deadline, manager.extend(1000, 950, -0.95, start, budget, deadline), "a sure loss");
+        assertEquals(deadline, manager.extend(0, 0, 0.0, start, budget, deadline), "no visits yet");
+        assertTrue(manager.extend(1000, 950, 0.5, start, budget, deadline) > deadline);
+    }
+}
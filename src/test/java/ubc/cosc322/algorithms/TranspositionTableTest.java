@@ -0,0 +1,36 @@
+package ubc.cosc322.algorithms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ubc.cosc322.core.Board;
+
+public class TranspositionTableTest {
+    @Test
+    void givenVirtualLossThenResult_whenProbed_thenOnlyTheResultRemains() {
+        TranspositionTable table = new TranspositionTable(1 << 10);
+        long key = TranspositionTable.key(new Board(), Board.P2);
+        table.update(key, 1, MonteCarloTreeSearch.VIRTUAL_LOSS);
+        table.update(key, 0, MonteCarloTreeSearch.WIN_SCORE - MonteCarloTreeSearch.VIRTUAL_LOSS);
+        table.update(key, 1, -MonteCarloTreeSearch.WIN_SCORE);
+        long packed = table.probe(key);
+        assertEquals(2, TranspositionTable.visits(packed));
+        assertEquals(0, TranspositionTable.score(packed));
+    }
+
+    @Test
+    void givenEvictedKey_whenScoreIsCorrected_thenNoEntryIsCreated() {
+        TranspositionTable table = new TranspositionTable(1 << 10);
+        long key = TranspositionTable.key(new Board(), Board.P1);
+        table.update(key, 0, MonteCarloTreeSearch.WIN_SCORE);
+        assertEquals(0L, table.probe(key));
+    }
+
+    @Test
+    void givenSamePosition_whenDifferentPlayersMovedLast_thenKeysDiffer() {
+        Board board = new Board();
+        assertNotEquals(TranspositionTable.key(board, Board.P1), TranspositionTable.key(board, Board.P2));
+    }
+}
@@ -0,0 +1,262 @@
+package ubc.cosc322.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ubc.cosc322.algorithms.PlayoutEngine;
+
+public class BoardTest {
+    private static final int GAMES = 200;
+
+    // Everything a mutator maintains: the piece masks (through the square values), the occupancy and stuck masks,
+    // the hash and the queen index slot by slot.
+    private static long[] snapshot(Board board) {
+        int squares = Board.DEFAULT_BOARD_SIZE * Board.DEFAULT_BOARD_SIZE;
+        long[] state = new long[squares + 5 + 2 * MoveGenerator.QUEENS_PER_PLAYER];
+        for (int square = 0; square < squares; square++) {
+            state[square] = board.getValue(square);
+        }
+        state[squares] = board.getOccupiedLo();
+        state[squares + 1] = board.getOccupiedHi();
+        state[squares + 2] = board.getStuckQueens(false);
+        state[squares + 3] = board.getStuckQueens(true);
+        state[squares + 4] = board.getHash();
+        for (int slot = 0; slot < MoveGenerator.QUEENS_PER_PLAYER; slot++) {
+            state[squares + 5 + slot] = board.getQueenSquare(Board.P1, slot);
+            state[squares + 5 + MoveGenerator.QUEENS_PER_PLAYER + slot] = board.getQueenSquare(Board.P2, slot);
+        }
+        return state;
+    }
+
+    @Test
+    void givenRandomGames_whenEveryMoveIsMadeAndUnmade_thenBoardIsRestoredExactly() {
+        Random random = new Random(3);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int game = 0; game < GAMES; game++) {
+            Board board = new Board();
+            int player = Board.P1;
+            Deque<Integer> history = new ArrayDeque<>();
+            Deque<long[]> states = new ArrayDeque<>();
+            while (board.checkStatus() == Board.IN_PROGRESS) {
+                long[] before = snapshot(board);
+                int count = board.getAllPossibleMoves(player, moves);
+                // Try a few moves in place before playing on, including one that may shoot back onto the from square.
+                for (int i = 0; i < Math.min(count, 8); i++) {
+                    int move = moves[random.nextInt(count)];
+                    board.makeMove(move);
+                    assertEquals(player, board.getValue(Move.to(move)));
+                    assertEquals(Board.ARROW, board.getValue(Move.arrow(move)));
+                    board.unmakeMove(move);
+                    assertArrayEquals(before, snapshot(board), Move.toString(move));
+                }
+                int move = moves[random.nextInt(count)];
+                states.push(before);
+                history.push(move);
+                board.makeMove(move);
+                player = 3 - player;
+            }
+            // Unwinding the whole game passes back through every position exactly.
+            while (!history.isEmpty()) {
+                board.unmakeMove(history.pop());
+                assertArrayEquals(states.pop(), snapshot(board));
+            }
+        }
+    }
+
+    // Finds the stuck queens by looking at the eight neighbours of every queen on the 2D board.
+    private static long[] bruteForceStuckQueens(int[][] values) {
+        long[] stuck = new long[2];
+        for (int x = 0; x < Board.DEFAULT_BOARD_SIZE; x++) {
+            for (int y = 0; y < Board.DEFAULT_BOARD_SIZE; y++) {
+                if (values[x][y] != Board.P1 && values[x][y] != Board.P2) {
+                    continue;
+                }
+                boolean free = false;
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        int nx = x + dx;
+                        int ny = y + dy;
+                        if (nx >= 0 && nx < Board.DEFAULT_BOARD_SIZE && ny >= 0 && ny < Board.DEFAULT_BOARD_SIZE
+                                && values[nx][ny] == 0) {
+                            free = true;
+                        }
+                    }
+                }
+                int square = Board.square(x, y);
+                if (!free) {
+                    stuck[square < 64 ? 0 : 1] |= 1L << square;
+                }
+            }
+        }
+        return stuck;
+    }
+
+    private static int bruteForceStatus(int[][] values, long[] stuck) {
+        boolean blackHasMoves = false;
+        boolean whiteHasMoves = false;
+        for (int x = 0; x < Board.DEFAULT_BOARD_SIZE; x++) {
+            for (int y = 0; y < Board.DEFAULT_BOARD_SIZE; y++) {
+                int square = Board.square(x, y);
+                boolean isStuck = (stuck[square < 64 ? 0 : 1] & (1L << square)) != 0;
+                if (values[x][y] == Board.P1 && !isStuck) blackHasMoves = true;
+                if (values[x][y] == Board.P2 && !isStuck) whiteHasMoves = true;
+            }
+        }
+        if (blackHasMoves && whiteHasMoves) return Board.IN_PROGRESS;
+        if (blackHasMoves) return Board.P1;
+        if (whiteHasMoves) return Board.P2;
+        return Board.DRAW;
+    }
+
+    private static void assertStuckQueensMatchBruteForce(Board board) {
+        int[][] values = board.getBoard();
+        long[] stuck = bruteForceStuckQueens(values);
+        assertEquals(stuck[0], board.getStuckQueens(false));
+        assertEquals(stuck[1], board.getStuckQueens(true));
+        assertEquals(bruteForceStatus(values, stuck), board.checkStatus());
+    }
+
+    @Test
+    void givenRandomGames_whenPlayedAndUnwound_thenStuckQueensAndStatusMatchBruteForce() {
+        Random random = new Random(5);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int finished = 0;
+        for (int game = 0; game < GAMES; game++) {
+            Board board = new Board();
+            int player = Board.P1;
+            Deque<Integer> history = new ArrayDeque<>();
+            while (true) {
+                assertStuckQueensMatchBruteForce(board);
+                if (board.checkStatus() != Board.IN_PROGRESS) {
+                    finished++;
+                    break;
+                }
+                int count = board.getAllPossibleMoves(player, moves);
+                int move = moves[random.nextInt(count)];
+                history.push(move);
+                board.makeMove(move);
+                player = 3 - player;
+            }
+            while (!history.isEmpty()) {
+                board.unmakeMove(history.pop());
+                assertStuckQueensMatchBruteForce(board);
+            }
+        }
+        assertEquals(GAMES, finished);
+    }
+
+    @Test
+    void givenWalledInQueens_whenSquaresAreFreed_thenStatusFollowsTheStuckMasks() {
+        int[][] values = new int[Board.DEFAULT_BOARD_SIZE][Board.DEFAULT_BOARD_SIZE];
+        for (int[] row : values) {
+            Arrays.fill(row, Board.ARROW);
+        }
+        values[0][0] = Board.P1;
+        values[9][9] = Board.P2;
+        values[5][5] = 0; // An empty square no queen stands next to
+        Board board = new Board();
+        board.setBoard(values);
+        assertStuckQueensMatchBruteForce(board);
+        assertEquals(Board.DRAW, board.checkStatus());
+        board.removeArrow(Board.square(1, 1));
+        assertStuckQueensMatchBruteForce(board);
+        assertEquals(Board.P1, board.checkStatus());
+        board.moveQueen(Board.square(0, 0), Board.square(1, 1));
+        assertStuckQueensMatchBruteForce(board);
+        assertEquals(Board.P1, board.checkStatus());
+    }
+
+    private static long recomputedHash(Board board) {
+        Board rebuilt = new Board();
+        rebuilt.setBoard(board.getBoard());
+        return rebuilt.getHash();
+    }
+
+    @Test
+    void givenRandomGames_whenPlayed_thenIncrementalHashMatchesRecomputation() {
+        Random random = new Random(6);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int game = 0; game < GAMES; game++) {
+            Board board = new Board();
+            long start = board.getHash();
+            assertEquals(recomputedHash(board), start);
+            int player = Board.P1;
+            Deque<Integer> history = new ArrayDeque<>();
+            while (board.checkStatus() == Board.IN_PROGRESS) {
+                int count = board.getAllPossibleMoves(player, moves);
+                int move = moves[random.nextInt(count)];
+                // The queen step alone is a position the search stores too.
+                board.moveQueen(Move.from(move), Move.to(move));
+                assertEquals(recomputedHash(board), board.getHash());
+                board.placeArrow(Move.arrow(move));
+                assertEquals(recomputedHash(board), board.getHash());
+                assertEquals(board.getHash(), board.clone().getHash());
+                history.push(move);
+                player = 3 - player;
+            }
+            while (!history.isEmpty()) {
+                board.unmakeMove(history.pop());
+                assertEquals(recomputedHash(board), board.getHash());
+            }
+            assertEquals(start, board.getHash());
+        }
+    }
+
+    @Test
+    void givenPlayouts_whenStoppedAtAnyPoint_thenHashAndStuckQueensMatchARebuild() {
+        PlayoutEngine engine = PlayoutEngine.get();
+        Random random = new Random(7);
+        for (int game = 0; game < GAMES; game++) {
+            Board start = new Board();
+            engine.playoutInPlace(start, Board.P1, random.nextInt(60));
+            long[] before = snapshot(start);
+            Board board = start.clone();
+            // Played to the end, or to the point where the board is partitioned.
+            engine.playoutInPlace(board, 1 + random.nextInt(2));
+            assertStuckQueensMatchBruteForce(board);
+            assertEquals(recomputedHash(board), board.getHash());
+            engine.playout(start, Board.P1);
+            assertArrayEquals(before, snapshot(start), "playout() changed the starting position");
+        }
+    }
+
+    @Test
+    void givenTwoMoveOrders_whenTheyReachTheSamePosition_thenHashesAreEqual() {
+        int black = Move.encode(Board.square(0, 6), Board.square(1, 6), Board.square(2, 6));
+        int white = Move.encode(Board.square(0, 3), Board.square(1, 3), Board.square(2, 3));
+        int blackAgain = Move.encode(Board.square(9, 6), Board.square(8, 6), Board.square(7, 6));
+        Board first = new Board();
+        first.makeMove(black);
+        first.makeMove(white);
+        first.makeMove(blackAgain);
+        Board second = new Board();
+        second.makeMove(blackAgain);
+        second.makeMove(white);
+        second.makeMove(black);
+        assertEquals(first.getHash(), second.getHash());
+        second.unmakeMove(black);
+        assertNotEquals(first.getHash(), second.getHash());
+    }
+
+    @Test
+    void givenQueenStepAndArrow_whenUndoneSeparately_thenBoardIsRestoredExactly() {
+        Board board = new Board();
+        long[] before = snapshot(board);
+        int move = Move.encode(Board.square(0, 6), Board.square(0, 7), Board.square(0, 6));
+        board.moveQueen(Move.from(move), Move.to(move));
+        long[] stepped = snapshot(board);
+        board.placeArrow(Move.arrow(move));
+        board.removeArrow(Move.arrow(move));
+        assertArrayEquals(stepped, snapshot(board));
+        board.moveQueen(Move.to(move), Move.from(move));
+        assertArrayEquals(before, snapshot(board));
+    }
+}